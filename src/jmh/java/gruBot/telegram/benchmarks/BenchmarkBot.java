@@ -0,0 +1,110 @@
+package gruBot.telegram.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.bot.GruBot;
+import gruBot.telegram.bot.GruBotConfig;
+import gruBot.telegram.storage.Storage;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
+import org.telegram.telegrambots.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.api.objects.ChatMember;
+import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class BenchmarkBot extends GruBot {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static {
+        GruBotConfig.OUTBOUND_GLOBAL_RATE = Double.MAX_VALUE / 2;
+        GruBotConfig.OUTBOUND_CHAT_BURST = Double.MAX_VALUE / 2;
+        GruBotConfig.OUTBOUND_CHAT_RATE = Double.MAX_VALUE / 2;
+    }
+
+    private final AtomicInteger messageIds = new AtomicInteger(1000);
+    private final AtomicLong outboundCalls = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> outboundByMethod = new ConcurrentHashMap<>();
+    private volatile long telegramLatency;
+    private volatile Consumer<Update> processed;
+
+    public BenchmarkBot() {
+        super(new DefaultBotOptions());
+    }
+
+    @Override
+    protected Storage createStorage() {
+        return new BenchmarkFirestore(this);
+    }
+
+    public BenchmarkFirestore getBenchmarkFirestore() {
+        return (BenchmarkFirestore) getStorage();
+    }
+
+    public long getOutboundCalls() {
+        return outboundCalls.get();
+    }
+
+    public Map<String, Long> getOutboundCallsByMethod() {
+        Map<String, Long> calls = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> method : outboundByMethod.entrySet())
+            calls.put(method.getKey(), method.getValue().get());
+        return calls;
+    }
+
+    public void setTelegramLatency(long millis) {
+        this.telegramLatency = millis;
+    }
+
+    public void onProcessed(Consumer<Update> processed) {
+        this.processed = processed;
+    }
+
+    @Override
+    protected CompletableFuture<?> processUpdate(Update update) {
+        return super.processUpdate(update).whenComplete((result, e) -> {
+            Consumer<Update> listener = processed;
+            if (listener != null)
+                listener.accept(update);
+        });
+    }
+
+    static void pause(long millis) {
+        if (millis <= 0)
+            return;
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) {
+        outboundCalls.incrementAndGet();
+        outboundByMethod.computeIfAbsent(method.getMethod(), key -> new AtomicLong()).incrementAndGet();
+        pause(telegramLatency);
+        if (method instanceof SendMessage) {
+            SendMessage sendMessage = (SendMessage) method;
+            return (T) BenchmarkUpdates.sentMessage(Long.valueOf(sendMessage.getChatId()), messageIds.incrementAndGet(), sendMessage.getText());
+        }
+        if (method instanceof GetChatMember) {
+            try {
+                return (T) mapper.readValue("{\"user\":{\"id\":1,\"is_bot\":false,\"first_name\":\"Admin\"},\"status\":\"administrator\"}", ChatMember.class);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return (T) Boolean.TRUE;
+    }
+}
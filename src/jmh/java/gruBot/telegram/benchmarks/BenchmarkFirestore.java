@@ -0,0 +1,135 @@
+package gruBot.telegram.benchmarks;
+
+import gruBot.telegram.bot.GruBot;
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.firestore.Firestore;
+import gruBot.telegram.objects.Command;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class BenchmarkFirestore extends Firestore {
+    private static final ScheduledExecutorService acknowledgements = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "benchmark-storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConcurrentHashMap<Long, Set<String>> groups = new ConcurrentHashMap<>();
+    private final PollIndex polls = new PollIndex();
+    private final Set<Long> loadedGroups = ConcurrentHashMap.newKeySet();
+    private volatile long storageLatency;
+
+    public BenchmarkFirestore(GruBot bot) {
+        super(bot, null);
+    }
+
+    public void addGroup(long chatId, int groupSize) {
+        Set<String> users = ConcurrentHashMap.newKeySet();
+        for (int i = 1; i <= groupSize; i++)
+            users.add(String.valueOf(i));
+        groups.put(chatId, users);
+    }
+
+    public PollIndex getPolls() {
+        return polls;
+    }
+
+    public void setStorageLatency(long millis) {
+        this.storageLatency = millis;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkGroupExists(long chatId) {
+        if (!loadedGroups.add(chatId))
+            return CompletableFuture.completedFuture(groups.containsKey(chatId));
+        return acknowledge().thenApply(loaded -> groups.containsKey(chatId));
+    }
+
+    @Override
+    public CompletableFuture<Void> checkUserExistsInGroup(Update update) {
+        Set<String> users = groups.get(update.getMessage().getChatId());
+        if (users != null)
+            users.add(String.valueOf(update.getMessage().getFrom().getId()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> createNewGroup(Update update) {
+        groups.putIfAbsent(update.getMessage().getChatId(), ConcurrentHashMap.newKeySet());
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewAnnouncement(Update update, Command command) {
+        return CompletableFuture.completedFuture(createAction(update, command));
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewArticle(Update update, Command command) {
+        return CompletableFuture.completedFuture(createAction(update, command));
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewPoll(Update update, Command command) {
+        HashMap<String, Object> poll = createAction(update, command);
+        poll.put("voteOptions", command.getOptions());
+        return CompletableFuture.completedFuture(poll);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Void> setMessageIdToAction(int messageId, HashMap<String, Object> action) {
+        if (action.containsKey("voteOptions"))
+            polls.put((long) action.get("group"), messageId, null, (Date) action.get("date"), (String) action.get("desc"),
+                    (Map<String, String>) action.get("voteOptions"), (Map<String, String>) action.get("users"));
+        return acknowledge();
+    }
+
+    @Override
+    public CompletableFuture<EditMessageText> updatePollAnswer(int userId, int pollOptionNumber, long chatId, int pollMessageId) {
+        PollIndex.Entry poll = polls.get(chatId, pollMessageId);
+        if (poll == null)
+            return CompletableFuture.completedFuture(null);
+
+        poll.vote(userId, pollOptionNumber);
+        return CompletableFuture.completedFuture(getMessageText(poll));
+    }
+
+    private CompletableFuture<Void> acknowledge() {
+        if (storageLatency <= 0)
+            return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> stored = new CompletableFuture<>();
+        acknowledgements.schedule(() -> stored.complete(null), storageLatency, TimeUnit.MILLISECONDS);
+        return stored;
+    }
+
+    private HashMap<String, Object> createAction(Update update, Command command) {
+        Message message = update.getMessage();
+        HashMap<String, Object> action = new HashMap<>();
+        action.put("group", message.getChatId());
+        action.put("messageId", -1);
+        action.put("desc", command.getTitle());
+        action.put("text", command.getText());
+        action.put("date", new Date());
+
+        HashMap<String, String> users = new HashMap<>();
+        Set<String> groupUsers = groups.get(message.getChatId());
+        if (groupUsers != null)
+            for (String user : groupUsers)
+                users.put(user, "new");
+        action.put("users", users);
+        return action;
+    }
+}
@@ -0,0 +1,109 @@
+package gruBot.telegram.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class BenchmarkUpdates {
+    public static final String MIX_PLAIN = "plain";
+    public static final String MIX_MIXED = "mixed";
+    public static final String MIX_COMMANDS = "commands";
+    public static final String MIX_CALLBACKS = "callbacks";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static List<String> texts(String mix, int count, long seed) {
+        Random random = new Random(seed);
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int commandPercent = MIX_PLAIN.equals(mix) ? 0 : MIX_MIXED.equals(mix) ? 10 : 100;
+            if (random.nextInt(100) >= commandPercent) {
+                texts.add("Обычное сообщение номер " + i + ", ничего особенного");
+                continue;
+            }
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    texts.add("!Собрание " + i + "!\nВ пятницу в 18:00 в актовом зале");
+                    break;
+                case 1:
+                    texts.add("?Куда идём " + i + "?\n1. Кино\n2. Театр\n3. Боулинг\n4. Домой");
+                    break;
+                default:
+                    texts.add("*Статья " + i + "*\nhttps://example.com/article/" + i);
+                    break;
+            }
+        }
+        return texts;
+    }
+
+    public static Update message(long chatId, int userId, int messageId, String text) {
+        return update("{\"update_id\":" + messageId + ",\"message\":" + messageJson(chatId, userId, messageId, text) + "}");
+    }
+
+    public static Update callback(long chatId, int userId, int pollMessageId, int option) {
+        return update("{\"update_id\":" + pollMessageId + ",\"callback_query\":{\"id\":\"" + userId + "_" + pollMessageId + "\","
+                + "\"from\":" + userJson(userId) + ","
+                + "\"message\":" + messageJson(chatId, 1, pollMessageId, "poll") + ","
+                + "\"chat_instance\":\"" + chatId + "\",\"data\":\"update_poll_" + option + "\"}}");
+    }
+
+    public static HashMap<String, Object> poll(long chatId, int groupSize) {
+        HashMap<String, String> options = new HashMap<>();
+        for (int i = 1; i <= 4; i++)
+            options.put(String.valueOf(i), "Вариант " + i);
+
+        HashMap<String, String> users = new HashMap<>();
+        for (int i = 1; i <= groupSize; i++)
+            users.put(String.valueOf(i), "new");
+
+        HashMap<String, Object> poll = new HashMap<>();
+        poll.put("group", chatId);
+        poll.put("date", new Date());
+        poll.put("desc", "Куда идём?\n");
+        poll.put("voteOptions", options);
+        poll.put("users", users);
+        return poll;
+    }
+
+    public static Message sentMessage(long chatId, int messageId, String text) {
+        try {
+            return mapper.readValue(messageJson(chatId, 1, messageId, text), Message.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Update update(String json) {
+        try {
+            return mapper.readValue(json, Update.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String messageJson(long chatId, int userId, int messageId, String text) {
+        return "{\"message_id\":" + messageId + ",\"from\":" + userJson(userId) + ","
+                + "\"chat\":{\"id\":" + chatId + ",\"type\":\"supergroup\",\"title\":\"Chat " + chatId + "\"},"
+                + "\"date\":" + (System.currentTimeMillis() / 1000) + ",\"text\":" + quote(text) + "}";
+    }
+
+    private static String userJson(int userId) {
+        return "{\"id\":" + userId + ",\"is_bot\":false,\"first_name\":\"User\",\"last_name\":\"" + userId + "\",\"username\":\"user" + userId + "\"}";
+    }
+
+    private static String quote(String text) {
+        try {
+            return mapper.writeValueAsString(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package gruBot.telegram.benchmarks;
+
+import gruBot.telegram.bot.CommandParser;
+import gruBot.telegram.bot.GruBotPatterns;
+import gruBot.telegram.objects.Command;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandParserBenchmark {
+    private static final int MESSAGES = 1024;
+
+    @Param({BenchmarkUpdates.MIX_PLAIN, BenchmarkUpdates.MIX_MIXED, BenchmarkUpdates.MIX_COMMANDS})
+    public String messageMix;
+
+    private List<String> texts;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        texts = BenchmarkUpdates.texts(messageMix, MESSAGES, 42);
+    }
+
+    @Benchmark
+    public Command commandParser() {
+        return CommandParser.parse(next());
+    }
+
+    @Benchmark
+    public void patterns(Blackhole blackhole) {
+        String text = next();
+        blackhole.consume(Pattern.compile(GruBotPatterns.announcement, Pattern.DOTALL).matcher(text).matches());
+        blackhole.consume(Pattern.compile(GruBotPatterns.vote, Pattern.DOTALL).matcher(text).matches());
+        blackhole.consume(Pattern.compile(GruBotPatterns.article, Pattern.DOTALL).matcher(text).matches());
+    }
+
+    private String next() {
+        index = (index + 1) & (MESSAGES - 1);
+        return texts.get(index);
+    }
+}
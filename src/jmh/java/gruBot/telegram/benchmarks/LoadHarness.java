@@ -0,0 +1,219 @@
+package gruBot.telegram.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.bot.GruBotConfig;
+import gruBot.telegram.logger.Logger;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadHarness {
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final int POLL_MESSAGE_ID = 1;
+    private static final long SETTLE_TIMEOUT = 60000;
+
+    private final Map<String, String> options;
+    private final Map<Update, Long> sentAt = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicInteger completed = new AtomicInteger();
+    private long[] latencies;
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0)
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        new LoadHarness(options).run();
+        System.exit(0);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private long option(String name, long defaultValue) {
+        return Long.valueOf(option(name, String.valueOf(defaultValue)));
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Logger.setLevel(option("logLevel", Logger.ERROR));
+        GruBotConfig.DISPATCHER_POOL_SIZE = (int) option("dispatcherThreads", GruBotConfig.DISPATCHER_POOL_SIZE);
+        GruBotConfig.OUTBOUND_THREADS = (int) option("outboundThreads", GruBotConfig.OUTBOUND_THREADS);
+
+        List<Update> updates = options.containsKey("replay") ? replay(option("replay", null)) : generate();
+        if (options.containsKey("record"))
+            record(updates, option("record", null));
+
+        BenchmarkBot bot = new BenchmarkBot();
+        bot.setTelegramLatency(option("telegramLatency", 0));
+        bot.getBenchmarkFirestore().setStorageLatency(option("storageLatency", 0));
+        prepare(bot, updates, (int) option("users", 100));
+
+        latencies = new long[updates.size()];
+        bot.onProcessed(update -> {
+            Long start = sentAt.remove(update);
+            if (start != null)
+                latencies[completed.getAndIncrement()] = System.nanoTime() - start;
+        });
+
+        long rate = option("rate", 0);
+        System.out.println("Sending " + updates.size() + " updates" + (rate > 0 ? " at " + rate + "/s" : "") + "...");
+        long start = System.nanoTime();
+        for (int i = 0; i < updates.size(); i++) {
+            if (rate > 0)
+                pace(start + i * 1_000_000_000L / rate);
+
+            Update update = updates.get(i);
+            sentAt.put(update, System.nanoTime());
+            bot.onUpdateReceived(update);
+        }
+        bot.getDispatcher().drain();
+        long processedIn = System.nanoTime() - start;
+
+        settle(bot);
+        long settledIn = System.nanoTime() - start;
+        report(bot, updates.size(), processedIn, settledIn);
+        bot.getDispatcher().shutdown();
+    }
+
+    private List<Update> generate() {
+        int chats = (int) option("chats", 64);
+        int users = (int) option("users", 100);
+        int count = (int) option("updates", 100000);
+        String mix = option("mix", BenchmarkUpdates.MIX_MIXED);
+        Random random = new Random(option("seed", 42));
+
+        List<String> texts = BenchmarkUpdates.texts(BenchmarkUpdates.MIX_CALLBACKS.equals(mix) ? BenchmarkUpdates.MIX_PLAIN : mix, count, random.nextLong());
+        List<Update> updates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long chatId = -1000L - random.nextInt(chats);
+            int userId = random.nextInt(users) + 1;
+            if (BenchmarkUpdates.MIX_CALLBACKS.equals(mix))
+                updates.add(BenchmarkUpdates.callback(chatId, userId, POLL_MESSAGE_ID, random.nextInt(4) + 1));
+            else
+                updates.add(BenchmarkUpdates.message(chatId, userId, 10 + i, texts.get(i)));
+        }
+        return updates;
+    }
+
+    private List<Update> replay(String file) throws IOException {
+        List<Update> updates = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                if (!line.trim().isEmpty())
+                    updates.add(BenchmarkUpdates.update(line));
+        }
+        return updates;
+    }
+
+    private void record(List<Update> updates, String file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            for (Update update : updates) {
+                writer.write(mapper.writeValueAsString(update));
+                writer.newLine();
+            }
+        }
+        System.out.println("Recorded " + updates.size() + " updates to " + file);
+    }
+
+    private void prepare(BenchmarkBot bot, List<Update> updates, int users) {
+        Set<Long> chats = new HashSet<>();
+        Set<String> polls = new HashSet<>();
+        for (Update update : updates) {
+            if (update.hasMessage()) {
+                chats.add(update.getMessage().getChatId());
+            } else if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+                long chatId = update.getCallbackQuery().getMessage().getChatId();
+                int messageId = update.getCallbackQuery().getMessage().getMessageId();
+                chats.add(chatId);
+                if (polls.add(chatId + "_" + messageId))
+                    bot.getBenchmarkFirestore().setMessageIdToAction(messageId, BenchmarkUpdates.poll(chatId, users));
+            }
+        }
+
+        for (long chatId : chats)
+            bot.getBenchmarkFirestore().addGroup(chatId, users);
+    }
+
+    private void pace(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0)
+            LockSupport.parkNanos(remaining);
+    }
+
+    private void settle(BenchmarkBot bot) {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT;
+        long quietFor = Math.max(GruBotConfig.POLL_EDIT_INTERVAL * 2, 500);
+        long lastCalls = -1;
+        long lastChange = System.currentTimeMillis();
+        while (System.currentTimeMillis() < deadline) {
+            long calls = bot.getOutboundCalls();
+            if (calls != lastCalls) {
+                lastCalls = calls;
+                lastChange = System.currentTimeMillis();
+            } else if (bot.getOutboundQueue().getQueueDepth() == 0 && System.currentTimeMillis() - lastChange >= quietFor) {
+                return;
+            }
+            BenchmarkBot.pause(50);
+        }
+        System.out.println("Outbound queue did not settle within " + SETTLE_TIMEOUT + " ms");
+    }
+
+    private void report(BenchmarkBot bot, int sent, long processedIn, long settledIn) {
+        int done = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, done);
+        Arrays.sort(sorted);
+
+        System.out.println();
+        System.out.printf("updates sent        %d%n", sent);
+        System.out.printf("updates processed   %d (%d dropped)%n", done, sent - done);
+        System.out.printf("processing time     %.2f s%n", processedIn / 1e9);
+        System.out.printf("throughput          %.0f updates/s%n", done / (processedIn / 1e9));
+        System.out.printf("latency p50         %.2f ms%n", percentile(sorted, 0.50));
+        System.out.printf("latency p99         %.2f ms%n", percentile(sorted, 0.99));
+        System.out.printf("latency max         %.2f ms%n", percentile(sorted, 1.0));
+        System.out.printf("outbound calls      %d in %.2f s%n", bot.getOutboundCalls(), settledIn / 1e9);
+        for (Map.Entry<String, Long> method : bot.getOutboundCallsByMethod().entrySet())
+            System.out.printf("  %-18s%d%n", method.getKey(), method.getValue());
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,47 @@
+package gruBot.telegram.benchmarks;
+
+import gruBot.telegram.logger.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggerBenchmark {
+    @Param({Logger.INFO, Logger.WARNING})
+    public String level;
+
+    @Setup
+    public void setUp() {
+        Logger.setOutput(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        Logger.setLevel(level);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Logger.setLevel(Logger.INFO);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void info() {
+        Logger.log("Checking user group relations...", Logger.INFO);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void error() {
+        Logger.log("Request failed", Logger.ERROR);
+    }
+}
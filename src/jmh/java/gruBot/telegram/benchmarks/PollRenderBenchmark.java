@@ -0,0 +1,59 @@
+package gruBot.telegram.benchmarks;
+
+import gruBot.telegram.cache.PollIndex;
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PollRenderBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int groupSize;
+
+    @Param({"4", "10"})
+    public int options;
+
+    private BenchmarkBot bot;
+    private PollIndex.Entry poll;
+    private HashMap<String, String> voteOptions;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        bot = new BenchmarkBot();
+        random = new Random(42);
+
+        voteOptions = new HashMap<>();
+        for (int i = 1; i <= options; i++)
+            voteOptions.put(String.valueOf(i), "Вариант " + i);
+
+        HashMap<String, String> users = new HashMap<>();
+        for (int i = 1; i <= groupSize; i++)
+            users.put(String.valueOf(i), random.nextBoolean() ? "new" : String.valueOf(random.nextInt(options) + 1));
+
+        poll = new PollIndex().put(-100L, 1, null, new Date(), "Куда идём?\n", voteOptions, users);
+    }
+
+    @Benchmark
+    public EditMessageText getMessageText() {
+        return bot.getStorage().getMessageText(poll);
+    }
+
+    @Benchmark
+    public EditMessageText voteAndRender() {
+        poll.vote(random.nextInt(groupSize) + 1, random.nextInt(options) + 1);
+        return bot.getStorage().getMessageText(poll);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup getVoteKeyboard() {
+        return bot.getVoteKeyboard(voteOptions);
+    }
+}
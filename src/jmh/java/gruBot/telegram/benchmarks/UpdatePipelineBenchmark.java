@@ -0,0 +1,65 @@
+package gruBot.telegram.benchmarks;
+
+import gruBot.telegram.logger.Logger;
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UpdatePipelineBenchmark {
+    private static final int CHATS = 64;
+    private static final int BATCH = 1024;
+
+    @Param({"10", "1000"})
+    public int groupSize;
+
+    @Param({BenchmarkUpdates.MIX_PLAIN, BenchmarkUpdates.MIX_MIXED, BenchmarkUpdates.MIX_CALLBACKS})
+    public String messageMix;
+
+    private BenchmarkBot bot;
+    private List<Update> updates;
+
+    @Setup
+    public void setUp() {
+        Logger.setLevel(Logger.ERROR);
+        bot = new BenchmarkBot();
+
+        Random random = new Random(42);
+        for (int chat = 0; chat < CHATS; chat++) {
+            long chatId = -1000L - chat;
+            bot.getBenchmarkFirestore().addGroup(chatId, groupSize);
+            bot.getBenchmarkFirestore().setMessageIdToAction(1, BenchmarkUpdates.poll(chatId, groupSize));
+        }
+
+        updates = new ArrayList<>(BATCH);
+        List<String> texts = BenchmarkUpdates.texts(BenchmarkUpdates.MIX_CALLBACKS.equals(messageMix) ? BenchmarkUpdates.MIX_PLAIN : messageMix, BATCH, 42);
+        for (int i = 0; i < BATCH; i++) {
+            long chatId = -1000L - random.nextInt(CHATS);
+            int userId = random.nextInt(groupSize) + 1;
+            if (BenchmarkUpdates.MIX_CALLBACKS.equals(messageMix))
+                updates.add(BenchmarkUpdates.callback(chatId, userId, 1, random.nextInt(4) + 1));
+            else
+                updates.add(BenchmarkUpdates.message(chatId, userId, 10 + i, texts.get(i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bot.getDispatcher().shutdown();
+        Logger.setLevel(Logger.INFO);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void onUpdateReceived() throws InterruptedException {
+        for (Update update : updates)
+            bot.onUpdateReceived(update);
+        bot.getDispatcher().drain();
+    }
+}
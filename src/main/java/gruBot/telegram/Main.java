@@ -1,8 +1,17 @@
 package gruBot.telegram;
 
 import gruBot.telegram.bot.GruBot;
+import gruBot.telegram.bot.GruBotConfig;
+import gruBot.telegram.cluster.ClusterMember;
+import gruBot.telegram.cluster.ClusterRouter;
+import gruBot.telegram.journal.EventJournal;
 import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Metrics;
+import gruBot.telegram.metrics.MetricsServer;
+import gruBot.telegram.storage.WarmUp;
+import gruBot.telegram.utils.ConfigWatcher;
 import gruBot.telegram.utils.XMLReader;
+import gruBot.telegram.webhook.WebhookReceiver;
 import org.apache.http.HttpHost;
 import org.apache.http.client.config.RequestConfig;
 import org.telegram.telegrambots.ApiContext;
@@ -11,28 +20,133 @@ import org.telegram.telegrambots.TelegramBotsApi;
 import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.exceptions.TelegramApiException;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 public class Main {
     public static void main(String[] args) {
         Logger.log("Starting GruBot...", Logger.INFO);
         XMLReader.readBotConfig();
+        if (!GruBotConfig.POLLING_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE) && !WebhookReceiver.isValidSecret(GruBotConfig.WEBHOOK_SECRET)) {
+            Logger.log("WEBHOOK_SECRET must be set to at least 16 characters of A-Z, a-z, 0-9, _ or - in " + GruBotConfig.UPDATES_MODE + " mode",
+                    Logger.ERROR);
+            return;
+        }
+        if ((GruBotConfig.ROUTER_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE) || GruBotConfig.WORKER_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE))
+                && GruBotConfig.CLUSTER_SECRET.length() < 16) {
+            Logger.log("CLUSTER_SECRET must be set to at least 16 characters in " + GruBotConfig.UPDATES_MODE + " mode", Logger.ERROR);
+            return;
+        }
+        if (GruBotConfig.WORKER_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE) && GruBotConfig.LOCAL_STORAGE.equalsIgnoreCase(GruBotConfig.STORAGE_BACKEND)) {
+            Logger.log("Local storage is not shared between cluster workers, use Firestore for worker mode", Logger.ERROR);
+            return;
+        }
         Logger.log("Initializing GruBot...", Logger.INFO);
 
         try {
             DefaultBotOptions options = new DefaultBotOptions();
+            Proxy webhookProxy = null;
 
             if (args.length == 2) {
                 Logger.log("Proxy settings found. Trying to connect...", Logger.INFO);
                 HttpHost proxy = new HttpHost(args[0], Integer.valueOf(args[1]));
                 RequestConfig config = RequestConfig.custom().setProxy(proxy).setConnectTimeout(5000).setSocketTimeout(5000).build();
                 options.setRequestConfig(config);
+                webhookProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(args[0], Integer.valueOf(args[1])));
+            }
+
+            if (GruBotConfig.ROUTER_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE)) {
+                startRouter(webhookProxy);
+                if (GruBotConfig.METRICS_PORT > 0)
+                    new MetricsServer(GruBotConfig.METRICS_HOST, GruBotConfig.METRICS_PORT).start();
+                return;
             }
 
+            if (GruBotConfig.JOURNAL_ENABLED)
+                EventJournal.start(Paths.get(GruBotConfig.JOURNAL_DIR), GruBotConfig.JOURNAL_SEGMENT_SIZE, GruBotConfig.JOURNAL_RETENTION_SEGMENTS,
+                        GruBotConfig.JOURNAL_RETENTION_HOURS, GruBotConfig.JOURNAL_FLUSH);
+
             ApiContextInitializer.init();
-            TelegramBotsApi telegramBotsApi = new TelegramBotsApi();
+            GruBot bot = new GruBot(options);
+
+            if (GruBotConfig.METRICS_PORT > 0)
+                new MetricsServer(GruBotConfig.METRICS_HOST, GruBotConfig.METRICS_PORT).start();
+
+            if (GruBotConfig.WARMUP_ENABLED)
+                warmUp(bot);
+
+            if (GruBotConfig.CONFIG_RELOAD)
+                new ConfigWatcher(XMLReader.getConfigPath()).start();
+
+            if (GruBotConfig.WEBHOOK_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE)) {
+                Logger.log("Starting in webhook mode...", Logger.INFO);
+                String route = WebhookReceiver.route(GruBotConfig.WEBHOOK_PATH, GruBotConfig.WEBHOOK_SECRET);
+                WebhookReceiver receiver = new WebhookReceiver(bot, GruBotConfig.WEBHOOK_HOST, GruBotConfig.WEBHOOK_PORT,
+                        route, GruBotConfig.WEBHOOK_THREADS, GruBotConfig.WEBHOOK_QUEUE_SIZE, false);
+                receiver.start();
+
+                if (!GruBotConfig.WEBHOOK_URL.isEmpty())
+                    WebhookReceiver.registerWebhook(GruBotConfig.WEBHOOK_URL, route, webhookProxy);
+            } else if (GruBotConfig.WORKER_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE)) {
+                Logger.log("Starting as cluster worker...", Logger.INFO);
+                String route = WebhookReceiver.route(GruBotConfig.WEBHOOK_PATH, GruBotConfig.WEBHOOK_SECRET);
+                WebhookReceiver receiver = new WebhookReceiver(bot, GruBotConfig.WEBHOOK_HOST, GruBotConfig.WEBHOOK_PORT,
+                        route, GruBotConfig.WEBHOOK_THREADS, GruBotConfig.WEBHOOK_QUEUE_SIZE, true);
+                receiver.start();
 
-            telegramBotsApi.registerBot(new GruBot(options));
-        } catch (TelegramApiException e) {
+                String nodeUrl = GruBotConfig.CLUSTER_NODE_URL.isEmpty()
+                        ? "http://127.0.0.1:" + GruBotConfig.WEBHOOK_PORT + route
+                        : GruBotConfig.CLUSTER_NODE_URL;
+                ClusterMember member = new ClusterMember(GruBotConfig.CLUSTER_ROUTER_URL, nodeUrl, GruBotConfig.CLUSTER_SECRET,
+                        GruBotConfig.CLUSTER_HEARTBEAT * 1000L, GruBotConfig.CLUSTER_VIRTUAL_NODES);
+                bot.setClusterMember(member);
+                member.start();
+            } else {
+                TelegramBotsApi telegramBotsApi = new TelegramBotsApi();
+                telegramBotsApi.registerBot(bot);
+            }
+
+            bot.restorePollDeadlines();
+        } catch (TelegramApiException | IOException e) {
             Logger.log(e.getMessage(), Logger.ERROR);
         }
     }
+
+    private static void startRouter(Proxy webhookProxy) throws IOException {
+        Logger.log("Starting as cluster router...", Logger.INFO);
+        List<String> nodes = new ArrayList<>();
+        for (String node : GruBotConfig.CLUSTER_NODES.split(","))
+            if (!node.trim().isEmpty())
+                nodes.add(node.trim());
+
+        String route = WebhookReceiver.route(GruBotConfig.WEBHOOK_PATH, GruBotConfig.WEBHOOK_SECRET);
+        ClusterRouter router = new ClusterRouter(GruBotConfig.WEBHOOK_HOST, GruBotConfig.WEBHOOK_PORT, route,
+                GruBotConfig.WEBHOOK_THREADS, GruBotConfig.WEBHOOK_QUEUE_SIZE, GruBotConfig.CLUSTER_HOST, GruBotConfig.CLUSTER_PORT,
+                GruBotConfig.CLUSTER_SECRET, nodes, GruBotConfig.CLUSTER_VIRTUAL_NODES,
+                GruBotConfig.CLUSTER_NODE_TIMEOUT * 1000L);
+        router.start();
+
+        if (!GruBotConfig.WEBHOOK_URL.isEmpty())
+            WebhookReceiver.registerWebhook(GruBotConfig.WEBHOOK_URL, route, webhookProxy);
+    }
+
+    private static void warmUp(GruBot bot) {
+        WarmUp warmer = bot.getStorage().warmUp();
+        Metrics.gauge("grubot_warmup_progress_percent", "Share of cache warm-up snapshots loaded", () -> Math.round(warmer.getProgress() * 100));
+        Metrics.gauge("grubot_warmup_duration_ms", "Time spent warming up caches", warmer::getDurationMillis);
+
+        try {
+            if (warmer.awaitReady(GruBotConfig.WARMUP_READY_FRACTION, GruBotConfig.WARMUP_TIMEOUT * 1000L))
+                Logger.log("Caches are warm after " + warmer.getDurationMillis() + " ms, accepting updates", Logger.INFO);
+            else
+                Logger.log("Cache warm-up reached " + Math.round(warmer.getProgress() * 100) + "% in " + warmer.getDurationMillis()
+                        + " ms, accepting updates anyway", Logger.WARNING);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package gruBot.telegram.bot;
+
+import gruBot.telegram.objects.Command;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+public class CommandParser {
+    public static Command parse(String text) {
+        return parse(text, System.currentTimeMillis());
+    }
+
+    public static Command parse(String text, long now) {
+        if (text == null || text.isEmpty())
+            return Command.PLAIN;
+
+        char marker = text.charAt(0);
+        Command.Type type;
+        switch (marker) {
+            case '!':
+                type = Command.Type.ANNOUNCEMENT;
+                break;
+            case '?':
+                type = Command.Type.POLL;
+                break;
+            case '*':
+                type = Command.Type.ARTICLE;
+                break;
+            default:
+                return Command.PLAIN;
+        }
+
+        int titleEnd = findTitleEnd(text, marker, type == Command.Type.POLL);
+        if (titleEnd < 0)
+            return Command.PLAIN;
+
+        String title = text.substring(1, titleEnd) + "\n";
+        int bodyStart = titleEnd + 1;
+
+        if (type == Command.Type.POLL) {
+            if (text.charAt(bodyStart) == '\n')
+                return new Command(type, title, null, parseOptions(text, bodyStart));
+            return parseScheduledPoll(text, title, bodyStart, now);
+        }
+
+        if (bodyStart + 1 >= text.length())
+            return Command.PLAIN;
+
+        return new Command(type, title, parseText(text, bodyStart), null);
+    }
+
+    private static int findTitleEnd(String text, char marker, boolean allowSchedule) {
+        int length = text.length();
+        for (int i = 1; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == marker) {
+                if (i == 1 || i + 1 >= length)
+                    return -1;
+                if (text.charAt(i + 1) == '\n' || allowSchedule && text.charAt(i + 1) == ' ' && text.indexOf('\n', i + 1) > 0)
+                    return i;
+                return -1;
+            }
+            if (c == '\r' || c == '\n')
+                return -1;
+        }
+        return -1;
+    }
+
+    private static Command parseScheduledPoll(String text, String title, int from, long now) {
+        int end = text.indexOf('\n', from);
+        long deadline = 0;
+        long[] offsets = new long[0];
+
+        int i = from;
+        while (i < end) {
+            if (isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int tokenEnd = i;
+            while (tokenEnd < end && !isWhitespace(text.charAt(tokenEnd)))
+                tokenEnd++;
+
+            if (text.charAt(i) == '!') {
+                long offset = parseDuration(text, i + 1, tokenEnd);
+                if (offset <= 0)
+                    return Command.PLAIN;
+                offsets = Arrays.copyOf(offsets, offsets.length + 1);
+                offsets[offsets.length - 1] = offset;
+            } else {
+                if (deadline > 0)
+                    return Command.PLAIN;
+                long duration = parseDuration(text, i, tokenEnd);
+                deadline = duration > 0 ? now + duration : parseTimeOfDay(text, i, tokenEnd, now);
+                if (deadline <= 0)
+                    return Command.PLAIN;
+            }
+            i = tokenEnd;
+        }
+
+        if (deadline <= 0)
+            return Command.PLAIN;
+
+        long[] reminders = new long[offsets.length];
+        int count = 0;
+        for (long offset : offsets)
+            if (deadline - offset > now)
+                reminders[count++] = deadline - offset;
+        reminders = Arrays.copyOf(reminders, count);
+        Arrays.sort(reminders);
+
+        return new Command(Command.Type.POLL, title, null, parseOptions(text, end), deadline, reminders);
+    }
+
+    private static long parseDuration(String text, int start, int end) {
+        long total = 0;
+        int i = start;
+        while (i < end) {
+            int digitsEnd = i;
+            while (digitsEnd < end && isDigit(text.charAt(digitsEnd)))
+                digitsEnd++;
+            if (digitsEnd == i || digitsEnd == end || digitsEnd - i > 6)
+                return -1;
+
+            long value = Long.parseLong(text.substring(i, digitsEnd));
+            switch (text.charAt(digitsEnd)) {
+                case 'd':
+                case 'д':
+                    total += TimeUnit.DAYS.toMillis(value);
+                    break;
+                case 'h':
+                case 'ч':
+                    total += TimeUnit.HOURS.toMillis(value);
+                    break;
+                case 'm':
+                case 'м':
+                    total += TimeUnit.MINUTES.toMillis(value);
+                    break;
+                default:
+                    return -1;
+            }
+            i = digitsEnd + 1;
+        }
+        return total;
+    }
+
+    private static long parseTimeOfDay(String text, int start, int end, long now) {
+        int colon = text.indexOf(':', start);
+        if (colon <= start || colon >= end - 1 || colon - start > 2 || end - colon != 3)
+            return -1;
+
+        for (int i = start; i < end; i++)
+            if (i != colon && !isDigit(text.charAt(i)))
+                return -1;
+
+        int hours = Integer.parseInt(text.substring(start, colon));
+        int minutes = Integer.parseInt(text.substring(colon + 1, end));
+        if (hours > 23 || minutes > 59)
+            return -1;
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime current = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone);
+        LocalDateTime deadline = current.with(LocalTime.of(hours, minutes));
+        if (!deadline.isAfter(current))
+            deadline = deadline.plusDays(1);
+        return deadline.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private static String parseText(String text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            if (text.charAt(i) != '\n')
+                continue;
+
+            int end = lineEnd(text, i + 1);
+            if (end > i + 1)
+                return text.substring(i, end);
+        }
+        return "";
+    }
+
+    private static HashMap<String, String> parseOptions(String text, int from) {
+        HashMap<String, String> options = new HashMap<>();
+        int length = text.length();
+        int number = 1;
+        for (int i = from; i < length; i++) {
+            if (text.charAt(i) != '\n')
+                continue;
+
+            int start = i + 1;
+            int end = lineEnd(text, start);
+            options.put(String.valueOf(number++), stripOptionNumber(text, start, end));
+        }
+        return options;
+    }
+
+    private static String stripOptionNumber(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(text.charAt(i)))
+                continue;
+
+            int j = i;
+            while (j < end && isDigit(text.charAt(j)))
+                j++;
+            if (j < end && text.charAt(j) == '.' && j + 1 < end && isWhitespace(text.charAt(j + 1))) {
+                int k = j + 1;
+                while (k < end && isWhitespace(text.charAt(k)))
+                    k++;
+                return text.substring(start, i) + text.substring(k, end);
+            }
+            i = j - 1;
+        }
+        return text.substring(start, end);
+    }
+
+    private static int lineEnd(String text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++)
+            if (isLineTerminator(text.charAt(i)))
+                return i;
+        return length;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+    }
+}
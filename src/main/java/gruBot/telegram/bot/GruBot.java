@@ -1,31 +1,67 @@
 package gruBot.telegram.bot;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.DocumentReference;
+import gruBot.telegram.cache.AdminRightsCache;
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.cluster.ClusterMember;
+import gruBot.telegram.dispatcher.UpdateDispatcher;
 import gruBot.telegram.firestore.Firestore;
+import gruBot.telegram.journal.EventJournal;
 import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Histogram;
+import gruBot.telegram.metrics.Metrics;
+import gruBot.telegram.objects.Command;
+import gruBot.telegram.outbound.OutboundQueue;
+import gruBot.telegram.outbound.TelegramTransport;
+import gruBot.telegram.storage.LocalStorage;
+import gruBot.telegram.storage.PollDeadline;
+import gruBot.telegram.storage.PollMessages;
+import gruBot.telegram.storage.Storage;
+import org.telegram.telegrambots.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
 import org.telegram.telegrambots.api.methods.groupadministration.GetChatMember;
 import org.telegram.telegrambots.api.methods.pinnedmessages.PinChatMessage;
 import org.telegram.telegrambots.api.methods.send.SendMessage;
 import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.api.objects.CallbackQuery;
 import org.telegram.telegrambots.api.objects.ChatMember;
 import org.telegram.telegrambots.api.objects.Message;
 import org.telegram.telegrambots.api.objects.Update;
+import org.telegram.telegrambots.api.objects.User;
 import org.telegram.telegrambots.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.exceptions.TelegramApiException;
 
+import java.io.Serializable;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class GruBot extends TelegramLongPollingBot {
-    private Firestore firestore;
+    private static final Histogram updateLatency = Metrics.histogram("grubot_update_duration_seconds", "Time spent processing an update", "type");
+    private static final Histogram queueWait = Metrics.histogram("grubot_update_queue_wait_seconds", "Time an update waited in the dispatcher queue", "type");
+    private static final Counter updateErrors = Metrics.counter("grubot_update_errors_total", "Updates that failed to process", "type");
+    private static final Counter updatesShed = Metrics.counter("grubot_update_shed_total", "Updates or update work dropped under load", "policy");
+    private static final Histogram telegramLatency = Metrics.histogram("grubot_telegram_duration_seconds", "Latency of Telegram Bot API calls", "method");
+    private static final Counter telegramErrors = Metrics.counter("grubot_telegram_errors_total", "Failed Telegram Bot API calls", "method");
+
+    private Storage storage;
+    private UpdateDispatcher dispatcher;
+    private AdminRightsCache adminRightsCache;
+    private PollEditScheduler pollEditScheduler;
+    private PollDeadlineScheduler pollDeadlineScheduler;
+    private OutboundQueue outboundQueue;
+    private TelegramTransport transport;
+    private volatile ClusterMember clusterMember;
 
     @Override
     public String getBotUsername() {
@@ -39,58 +75,252 @@ public class GruBot extends TelegramLongPollingBot {
 
     public GruBot() {
         super();
-        Logger.log("Initializing Firestore...", Logger.INFO);
-        this.firestore = new Firestore(this);
-        Logger.log("Started", Logger.INFO);
+        init();
     }
 
     public GruBot(DefaultBotOptions options) {
         super(options);
-        Logger.log("Initializing Firestore...", Logger.INFO);
-        this.firestore = new Firestore(this);
+        init();
+    }
+
+    private void init() {
+        this.transport = new TelegramTransport(getOptions().getRequestConfig() != null ? getOptions().getRequestConfig().getProxy() : null,
+                GruBotConfig.TELEGRAM_POOL_SIZE, GruBotConfig.TELEGRAM_POOL_PER_ROUTE, GruBotConfig.TELEGRAM_CONNECT_TIMEOUT,
+                GruBotConfig.TELEGRAM_READ_TIMEOUT, GruBotConfig.TELEGRAM_ACQUIRE_TIMEOUT, GruBotConfig.TELEGRAM_KEEP_ALIVE);
+        this.outboundQueue = new OutboundQueue(new OutboundQueue.Transport() {
+            @Override
+            public <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException {
+                return GruBot.this.execute(method);
+            }
+        }, GruBotConfig.OUTBOUND_THREADS, GruBotConfig.OUTBOUND_QUEUE_SIZE, GruBotConfig.OUTBOUND_GLOBAL_RATE,
+                GruBotConfig.OUTBOUND_CHAT_BURST, GruBotConfig.OUTBOUND_CHAT_RATE);
+        this.pollEditScheduler = new PollEditScheduler(GruBotConfig.POLL_EDIT_INTERVAL, GruBotConfig.POLL_EDIT_THREADS,
+                edit -> outboundQueue.submit(Long.valueOf(edit.getChatId()), edit, OutboundQueue.Priority.LOW));
+        this.pollDeadlineScheduler = new PollDeadlineScheduler(GruBotConfig.POLL_DEADLINE_TICK, GruBotConfig.POLL_DEADLINE_WHEEL_SIZE,
+                GruBotConfig.POLL_DEADLINE_CONCURRENCY, new PollDeadlineScheduler.Handler() {
+            @Override
+            public boolean owns(long chatId) {
+                return ownsChat(chatId);
+            }
+
+            @Override
+            public CompletableFuture<?> close(PollDeadline deadline) throws Exception {
+                return onChatLane(deadline.getChatId(), () -> closePoll(deadline));
+            }
+
+            @Override
+            public CompletableFuture<?> remind(PollDeadline deadline) throws Exception {
+                return onChatLane(deadline.getChatId(), () -> remindPoll(deadline));
+            }
+        });
+        this.storage = createStorage();
+        this.dispatcher = new UpdateDispatcher(GruBotConfig.DISPATCHER_POOL_SIZE, GruBotConfig.DISPATCHER_QUEUE_SIZE,
+                GruBotConfig.DISPATCHER_PRIORITY_QUEUE_SIZE);
+        this.adminRightsCache = new AdminRightsCache(GruBotConfig.ADMIN_CACHE_SIZE, GruBotConfig.ADMIN_CACHE_TTL * 1000L, this::loadMemberStatus);
+        registerGauges();
+        checkPoolSize();
+        GruBotConfig.addListener(this::applyConfig);
         Logger.log("Started", Logger.INFO);
     }
 
+    private void applyConfig() {
+        outboundQueue.setRates(GruBotConfig.OUTBOUND_GLOBAL_RATE, GruBotConfig.OUTBOUND_CHAT_BURST, GruBotConfig.OUTBOUND_CHAT_RATE);
+        outboundQueue.setThreads(GruBotConfig.OUTBOUND_THREADS);
+        transport.setLimits(GruBotConfig.TELEGRAM_POOL_SIZE, GruBotConfig.TELEGRAM_POOL_PER_ROUTE, GruBotConfig.TELEGRAM_CONNECT_TIMEOUT,
+                GruBotConfig.TELEGRAM_READ_TIMEOUT, GruBotConfig.TELEGRAM_ACQUIRE_TIMEOUT);
+        checkPoolSize();
+        pollEditScheduler.setMinInterval(GruBotConfig.POLL_EDIT_INTERVAL);
+        pollEditScheduler.setThreads(GruBotConfig.POLL_EDIT_THREADS);
+        adminRightsCache.setLimits(GruBotConfig.ADMIN_CACHE_SIZE, GruBotConfig.ADMIN_CACHE_TTL * 1000L);
+        storage.applyConfig();
+    }
+
+    private void checkPoolSize() {
+        if (Math.min(GruBotConfig.TELEGRAM_POOL_SIZE, GruBotConfig.TELEGRAM_POOL_PER_ROUTE) < GruBotConfig.OUTBOUND_THREADS)
+            Logger.log("Telegram connection pool (" + Math.min(GruBotConfig.TELEGRAM_POOL_SIZE, GruBotConfig.TELEGRAM_POOL_PER_ROUTE) + ") is smaller than OUTBOUND_THREADS ("
+                    + GruBotConfig.OUTBOUND_THREADS + "), outbound calls will wait for connections", Logger.WARNING);
+    }
+
+    private void registerGauges() {
+        Metrics.gauge("grubot_dispatcher_queue_depth", "Updates waiting in the dispatcher queues", dispatcher::getQueueDepth);
+        Metrics.gauge("grubot_outbound_queue_depth", "Telegram calls waiting in the outbound queue", outboundQueue::getQueueDepth);
+        Metrics.counter("grubot_poll_edits_submitted_total", "Poll edits submitted to the scheduler", pollEditScheduler::getSubmitted);
+        Metrics.counter("grubot_poll_edits_sent_total", "Poll edits sent to Telegram", pollEditScheduler::getSent);
+        Metrics.counter("grubot_poll_edits_coalesced_total", "Poll edits replaced by a newer edit", pollEditScheduler::getCoalesced);
+        Metrics.counter("grubot_poll_edits_skipped_total", "Poll edits skipped as unchanged", pollEditScheduler::getSkipped);
+        Metrics.gauge("grubot_poll_deadlines_pending", "Poll deadlines and reminders waiting on the timing wheel", pollDeadlineScheduler::getPending);
+        Metrics.counter("grubot_poll_deadlines_closed_total", "Polls closed at their deadline", pollDeadlineScheduler::getClosed);
+        Metrics.counter("grubot_poll_deadlines_reminded_total", "Poll reminders sent to non-voters", pollDeadlineScheduler::getReminded);
+        Metrics.counter("grubot_poll_deadlines_deferred_total", "Poll deadline timers pushed back while closes were saturated", pollDeadlineScheduler::getDeferred);
+        Metrics.gauge("grubot_logger_pending", "Log lines waiting to be written", Logger::getPending);
+        Metrics.counter("grubot_logger_dropped_total", "Log lines dropped on overflow", Logger::getDropped);
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+        long start = System.nanoTime();
+        byte status = EventJournal.FAILED;
+        try {
+            T result = transport.execute(getBaseUrl(), method);
+            status = EventJournal.OK;
+            return result;
+        } catch (TelegramApiException e) {
+            telegramErrors.increment(method.getMethod());
+            throw e;
+        } finally {
+            telegramLatency.observeSince(method.getMethod(), start);
+            EventJournal.record(EventJournal.Type.OUTBOUND, status, getChatId(method), 0, System.nanoTime() - start, method.getMethod());
+        }
+    }
+
+    protected Storage createStorage() {
+        if (GruBotConfig.LOCAL_STORAGE.equalsIgnoreCase(GruBotConfig.STORAGE_BACKEND)) {
+            if (GruBotConfig.WORKER_MODE.equalsIgnoreCase(GruBotConfig.UPDATES_MODE))
+                throw new IllegalStateException("Local storage is not shared between cluster workers, use Firestore for worker mode");
+            Logger.log("Initializing local storage...", Logger.INFO);
+            return new LocalStorage(this, Paths.get(GruBotConfig.LOCAL_STORAGE_DIR));
+        }
+
+        Logger.log("Initializing Firestore...", Logger.INFO);
+        return new Firestore(this);
+    }
+
     @Override
     public void onUpdateReceived(Update update) {
-        if (update.hasMessage() && (update.getMessage().getChat().isGroupChat() || update.getMessage().getChat().isSuperGroupChat())) {
-            Message message = update.getMessage();
+        String type = getUpdateType(update);
+        long received = System.nanoTime();
+        UpdateDispatcher.AsyncTask task = () -> {
+            long start = System.nanoTime();
+            queueWait.observe(type, start - received);
+            if (update.hasCallbackQuery() && start - received > GruBotConfig.CALLBACK_STALE_AFTER * 1_000_000L) {
+                updatesShed.increment("stale_callback");
+                journalUpdate(update, type, EventJournal.FAILED, start - received);
+                return rejectStaleCallback(update, start - received);
+            }
+
+            CompletableFuture<?> processed;
             try {
-                processCommonMessage(message);
+                processed = processUpdate(update);
+            } catch (RuntimeException e) {
+                processed = failed(e);
+            }
+            return processed.whenComplete((result, e) -> {
+                updateLatency.observeSince(type, start);
+                journalUpdate(update, type, e == null ? EventJournal.OK : EventJournal.FAILED, System.nanoTime() - received);
+            });
+        };
+
+        if (update.hasCallbackQuery()) {
+            if (!dispatcher.dispatchPriority(getChatId(update), task))
+                updatesShed.increment("callback_overflow");
+            return;
+        }
 
-                if (!firestore.checkGroupExists(message.getChatId()))
-                    firestore.createNewGroup(update);
+        try {
+            dispatcher.dispatchAsync(getChatId(update), task);
+        } catch (InterruptedException e) {
+            Logger.log(e.getMessage(), Logger.ERROR);
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                firestore.checkUserExistsInGroup(update);
+    public Storage getStorage() {
+        return storage;
+    }
 
-                if (message.hasText()) {
-                    Matcher m = Pattern.compile(GruBotPatterns.announcement, Pattern.DOTALL).matcher(message.getText());
-                    if (m.matches()) {
-                        if (canUserCreateActions(message))
-                            processAnnouncement(update);
-                        else
-                            sendTextMessage(update, "У пользователя недостаточно прав для создания объявлений");
-                    }
+    public void restorePollDeadlines() {
+        pollDeadlineScheduler.restore(storage);
+    }
 
-                    m = Pattern.compile(GruBotPatterns.vote, Pattern.DOTALL).matcher(message.getText());
-                    if (m.matches()) {
-                        if (canUserCreateActions(message))
-                            processVote(update);
-                        else
-                            sendTextMessage(update, "У пользователя недостаточно прав для создания голосований");
-                    }
+    public UpdateDispatcher getDispatcher() {
+        return dispatcher;
+    }
 
-                    m = Pattern.compile(GruBotPatterns.article, Pattern.DOTALL).matcher(message.getText());
-                    if (m.matches()) {
-                        if (canUserCreateActions(message))
-                            processArticle(update);
-                        else
-                            sendTextMessage(update, "У пользователя недостаточно прав для создания статей");
-                    }
-                }
-            } catch (Exception e) {
-                Logger.log(e.getMessage(), Logger.ERROR);
-            }
+    private String getUpdateType(Update update) {
+        if (update.hasMessage())
+            return "message";
+        if (update.hasCallbackQuery())
+            return "callback";
+        return "other";
+    }
+
+    private CompletableFuture<?> rejectStaleCallback(Update update, long waitedNanos) {
+        CallbackQuery callbackQuery = update.getCallbackQuery();
+        String callbackData = callbackQuery.getData();
+        if (callbackData != null && callbackData.contains("update_poll_") && callbackQuery.getMessage() != null) {
+            Message message = callbackQuery.getMessage();
+            String detail = "poll " + message.getMessageId() + " option " + callbackData.substring(callbackData.lastIndexOf("_") + 1)
+                    + " lost, waited " + TimeUnit.NANOSECONDS.toMillis(waitedNanos) + " ms";
+            Logger.log("Stale vote of user " + callbackQuery.getFrom().getId() + " in chat " + message.getChatId() + ": " + detail, Logger.WARNING);
+            EventJournal.record(EventJournal.Type.VOTE, EventJournal.FAILED, message.getChatId(), callbackQuery.getFrom().getId(), waitedNanos, detail);
+        }
+
+        AnswerCallbackQuery answer = new AnswerCallbackQuery()
+                .setCallbackQueryId(callbackQuery.getId())
+                .setText("Голос не учтён, попробуйте ещё раз");
+        return outboundQueue.submit(getChatId(update), answer, OutboundQueue.Priority.HIGH).exceptionally(e -> {
+            Logger.log("Failed to answer stale callback " + callbackQuery.getId() + ": " + unwrap(e).getMessage(), Logger.WARNING);
+            return null;
+        });
+    }
+
+    private void journalUpdate(Update update, String type, byte status, long durationNanos) {
+        if (!EventJournal.isEnabled())
+            return;
+
+        EventJournal.record(EventJournal.Type.UPDATE, status, getChatId(update), getUserId(update), durationNanos, type,
+                GruBotConfig.JOURNAL_UPDATE_PAYLOADS ? EventJournal.payload(update) : null);
+    }
+
+    private long getUserId(Update update) {
+        if (update.hasMessage() && update.getMessage().getFrom() != null)
+            return update.getMessage().getFrom().getId();
+        if (update.hasCallbackQuery())
+            return update.getCallbackQuery().getFrom().getId();
+        return 0;
+    }
+
+    private long getChatId(Update update) {
+        if (update.hasMessage())
+            return update.getMessage().getChatId();
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null)
+            return update.getCallbackQuery().getMessage().getChatId();
+        return 0;
+    }
+
+    private static long getChatId(BotApiMethod<?> method) {
+        String chatId = null;
+        if (method instanceof SendMessage)
+            chatId = ((SendMessage) method).getChatId();
+        else if (method instanceof EditMessageText)
+            chatId = ((EditMessageText) method).getChatId();
+        else if (method instanceof PinChatMessage)
+            chatId = ((PinChatMessage) method).getChatId();
+        else if (method instanceof GetChatMember)
+            chatId = ((GetChatMember) method).getChatId();
+
+        try {
+            return chatId != null ? Long.parseLong(chatId) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    protected CompletableFuture<?> processUpdate(Update update) {
+        if (update.hasMessage() && (update.getMessage().getChat().isGroupChat() || update.getMessage().getChat().isSuperGroupChat())) {
+            Message message = update.getMessage();
+            processMemberChanges(message);
+            processCommonMessage(message);
+
+            return storage.checkGroupExists(message.getChatId())
+                    .thenCompose(exists -> exists ? CompletableFuture.<Void>completedFuture(null) : storage.createNewGroup(update))
+                    .thenCompose(created -> storage.checkUserExistsInGroup(update))
+                    .thenComposeAsync(checked -> processCommand(update), dispatcher.executor(message.getChatId()))
+                    .exceptionally(e -> {
+                        updateErrors.increment("message");
+                        Logger.log(unwrap(e).getMessage(), Logger.ERROR);
+                        return null;
+                    });
         } else if (update.hasCallbackQuery()) {
             String callbackData = update.getCallbackQuery().getData();
             Message message = update.getCallbackQuery().getMessage();
@@ -98,28 +328,103 @@ public class GruBot extends TelegramLongPollingBot {
             if (callbackData.contains("update_poll_")) {
                 int checkedIndex = Integer.valueOf(callbackData.substring(callbackData.lastIndexOf("_") + 1));
 
-                try {
-                    EditMessageText editMessageText = firestore.updatePollAnswer(update.getCallbackQuery().getFrom().getId(), checkedIndex, message.getMessageId());
+                long start = System.nanoTime();
+                int userId = update.getCallbackQuery().getFrom().getId();
+                return storage.updatePollAnswer(userId, checkedIndex, message.getChatId(), message.getMessageId()).handle((editMessageText, e) -> {
+                    if (e != null) {
+                        EventJournal.record(EventJournal.Type.VOTE, EventJournal.FAILED, message.getChatId(), userId, System.nanoTime() - start,
+                                "poll " + message.getMessageId() + " option " + checkedIndex);
+                        updateErrors.increment("callback");
+                        Logger.log(unwrap(e).getMessage(), Logger.ERROR);
+                        return null;
+                    }
+
+                    EventJournal.record(EventJournal.Type.VOTE, EventJournal.OK, message.getChatId(), userId, System.nanoTime() - start,
+                            "poll " + message.getMessageId() + " option " + checkedIndex + (editMessageText == null ? " ignored, poll closed or unknown" : ""));
+                    if (editMessageText == null)
+                        return null;
+
                     editMessageText.setChatId(message.getChatId())
                             .setMessageId(message.getMessageId());
 
-                    execute(editMessageText);
-                } catch (Exception e) {
-                    Logger.log(e.getMessage(), Logger.ERROR);
-                }
+                    pollEditScheduler.submit(editMessageText);
+                    return null;
+                });
             }
         }
+        return CompletableFuture.completedFuture(null);
     }
 
-    public void updatePoll(EditMessageText editMessageText) {
-        try {
-            execute(editMessageText);
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
+    private CompletableFuture<?> processCommand(Update update) {
+        Message message = update.getMessage();
+        if (!message.hasText())
+            return CompletableFuture.completedFuture(null);
+
+        Command command = CommandParser.parse(message.getText());
+        switch (command.getType()) {
+            case ANNOUNCEMENT:
+                if (canUserCreateActions(message))
+                    return processAnnouncement(update, command);
+                sendNotice(update, "У пользователя недостаточно прав для создания объявлений");
+                break;
+            case POLL:
+                if (canUserCreateActions(message))
+                    return processVote(update, command);
+                sendNotice(update, "У пользователя недостаточно прав для создания голосований");
+                break;
+            case ARTICLE:
+                if (canUserCreateActions(message))
+                    return processArticle(update, command);
+                sendNotice(update, "У пользователя недостаточно прав для создания статей");
+                break;
+            default:
+                break;
         }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public void updatePoll(EditMessageText editMessageText) {
+        pollEditScheduler.submit(editMessageText);
+    }
+
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    public PollEditScheduler getPollEditScheduler() {
+        return pollEditScheduler;
+    }
+
+    public void setClusterMember(ClusterMember clusterMember) {
+        this.clusterMember = clusterMember;
+    }
+
+    public boolean ownsChat(long chatId) {
+        ClusterMember member = clusterMember;
+        return member == null || member.owns(chatId);
+    }
+
+    private void processMemberChanges(Message message) {
+        if (message.getNewChatMembers() != null)
+            for (User user : message.getNewChatMembers())
+                adminRightsCache.invalidate(message.getChatId(), user.getId());
+
+        if (message.getLeftChatMember() != null)
+            adminRightsCache.invalidate(message.getChatId(), message.getLeftChatMember().getId());
+
+        if (message.getMigrateToChatId() != null)
+            adminRightsCache.invalidateChat(message.getChatId());
     }
 
     private void processCommonMessage(Message message) {
+        if (!Logger.isEnabled(Logger.INFO))
+            return;
+
+        if (dispatcher.getLoad(message.getChatId()) >= GruBotConfig.LOAD_SHED_THRESHOLD) {
+            updatesShed.increment("message_log");
+            return;
+        }
+
         String chatName = message.getChat().getTitle();
         String messageText = message.getText();
         String messageAuthor = message.getFrom().getUserName();
@@ -128,98 +433,196 @@ public class GruBot extends TelegramLongPollingBot {
         Logger.log(result, Logger.INFO);
     }
 
-    @SuppressWarnings("unchecked")
-    private void processArticle(Update update) throws TelegramApiException {
-        Message message = update.getMessage();
+    private CompletableFuture<?> processArticle(Update update, Command command) {
         Logger.log("Article is detected", Logger.INFO);
-        HashMap<String, Object> article = firestore.createNewArticle(update);
-        String announcementText = String.format("Статья:\r\n%s\r%s", article.get("desc").toString(), article.get("text").toString());
+        return storage.createNewArticle(update, command).thenAccept(article -> {
+            String announcementText = String.format("Статья:\r\n%s\r%s", article.get("desc").toString(), article.get("text").toString());
 
-        Message articleMessage = sendTextMessage(update, announcementText);
-
-        if (message.getChat().isGroupChat())
-            sendTextMessage(update, "Закреплять сообщения можно только в супер-чатах.\nИзмените группу для активации данного функционала");
-        else {
-            PinChatMessage pinChatMessage = new PinChatMessage()
-                    .setChatId(message.getChatId())
-                    .setMessageId(articleMessage.getMessageId());
-            execute(pinChatMessage);
-        }
-
-        try {
-            firestore.setMessageIdToAction(articleMessage.getMessageId(), (ApiFuture<DocumentReference>) article.get("reference"));
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
-        }
+            publishAction(update, EventJournal.Type.ARTICLE, article, new SendMessage().setText(announcementText));
+        });
     }
 
-    @SuppressWarnings("unchecked")
-    private void processAnnouncement(Update update) throws TelegramApiException {
-        Message message = update.getMessage();
+    private CompletableFuture<?> processAnnouncement(Update update, Command command) {
         Logger.log("Announcement is detected", Logger.INFO);
-        HashMap<String, Object> announcement = firestore.createNewAnnouncement(update);
-        String announcementText = String.format("Объявление:\r\n%s\r%s", announcement.get("desc").toString(), announcement.get("text").toString());
+        return storage.createNewAnnouncement(update, command).thenAccept(announcement -> {
+            String announcementText = String.format("Объявление:\r\n%s\r%s", announcement.get("desc").toString(), announcement.get("text").toString());
 
-        Message announcementMessage = sendTextMessage(update, announcementText);
+            publishAction(update, EventJournal.Type.ANNOUNCEMENT, announcement, new SendMessage().setText(announcementText));
+        });
+    }
 
-        if (message.getChat().isGroupChat())
-            sendTextMessage(update, "Закреплять сообщения можно только в супер-чатах.\nИзмените группу для активации данного функционала");
-        else {
-            PinChatMessage pinChatMessage = new PinChatMessage()
-                    .setChatId(message.getChatId())
-                    .setMessageId(announcementMessage.getMessageId());
-            execute(pinChatMessage);
-        }
+    private CompletableFuture<?> processVote(Update update, Command command) {
+        Logger.log("Vote is detected", Logger.INFO);
 
-        try {
-            firestore.setMessageIdToAction(announcementMessage.getMessageId(), (ApiFuture<DocumentReference>) announcement.get("reference"));
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
+        if (command.hasDeadline() && command.getDeadline() - System.currentTimeMillis() > TimeUnit.DAYS.toMillis(GruBotConfig.POLL_ACTIVE_DAYS)) {
+            sendNotice(update, "Срок голосования не может превышать " + GruBotConfig.POLL_ACTIVE_DAYS + " дн.");
+            return CompletableFuture.completedFuture(null);
         }
+
+        return storage.createNewPoll(update, command).thenAccept(vote -> publishVote(update, command, vote));
     }
 
     @SuppressWarnings("unchecked")
-    private void processVote(Update update) throws TelegramApiException {
-        Message message = update.getMessage();
-        Logger.log("Vote is detected", Logger.INFO);
-
-        HashMap<String, Object> vote = firestore.createNewPoll(update);
-
+    private void publishVote(Update update, Command command, HashMap<String, Object> vote) {
         StringBuilder options = new StringBuilder();
         for (Map.Entry<String, String> option : ((HashMap<String, String>) vote.get("voteOptions")).entrySet())
             options.append(option.getKey()).append(". ").append(option.getValue()).append(" [0]").append("\r\n");
         options.append("\r\n").append("Не проголосовало [").append(((HashMap<String, String>) vote.get("users")).size()).append("]");
+        if (command.hasDeadline())
+            options.append("\r\n").append(PollMessages.deadlineLine(command.getDeadline()));
 
         String announcementText = String.format("Голосование:\r\n%s\r\n%s", vote.get("desc").toString(), options);
 
         SendMessage sendVoteMessage = new SendMessage()
-                .setChatId(message.getChatId())
                 .setText(announcementText)
                 .setReplyMarkup(getVoteKeyboard((HashMap<String, String>) vote.get("voteOptions")));
-        Message voteMessage = execute(sendVoteMessage);
+        CompletableFuture<Message> published = publishAction(update, EventJournal.Type.POLL, vote, sendVoteMessage);
+        if (command.hasDeadline())
+            published.thenAccept(pollMessage -> pollDeadlineScheduler.schedule(
+                    new PollDeadline(pollMessage.getChatId(), pollMessage.getMessageId(), command.getDeadline(), command.getReminders())));
+    }
 
+    private CompletableFuture<Message> publishAction(Update update, EventJournal.Type type, HashMap<String, Object> action, SendMessage sendMessage) {
+        long start = System.nanoTime();
+        Message message = update.getMessage();
+        sendMessage.setChatId(message.getChatId());
+
+        CompletableFuture<Message> sent = outboundQueue.submit(message.getChatId(), sendMessage, OutboundQueue.Priority.NORMAL);
+        CompletableFuture<?> pinned = sent.thenCompose(actionMessage -> pinAction(update, actionMessage));
+        CompletableFuture<Void> stored = sent.thenCompose(actionMessage -> storage.setMessageIdToAction(actionMessage.getMessageId(), action));
+
+        CompletableFuture.allOf(pinned, stored).whenComplete((result, e) -> {
+            if (e != null) {
+                updateErrors.increment("action");
+                Logger.log(unwrap(e).getMessage(), Logger.ERROR);
+            }
+            EventJournal.record(type, e == null ? EventJournal.OK : EventJournal.FAILED, message.getChatId(), message.getFrom().getId(),
+                    System.nanoTime() - start, String.valueOf(action.get("desc")));
+        });
+        return sent.thenCombine(stored, (actionMessage, result) -> actionMessage);
+    }
+
+    private CompletableFuture<?> onChatLane(long chatId, Callable<CompletableFuture<?>> work) {
+        CompletableFuture<Object> done = new CompletableFuture<>();
+        boolean accepted = dispatcher.tryDispatchAsync(chatId, () -> {
+            CompletableFuture<?> started;
+            try {
+                started = work.call();
+            } catch (Exception e) {
+                started = failed(e);
+            }
+            return started.whenComplete((result, e) -> {
+                if (e != null)
+                    done.completeExceptionally(e);
+                else
+                    done.complete(result);
+            });
+        });
+        if (!accepted)
+            return failed(new RejectedExecutionException("Dispatcher queue of chat " + chatId + " is full"));
+        return done;
+    }
+
+    private CompletableFuture<?> closePoll(PollDeadline deadline) {
+        long start = System.nanoTime();
+        long chatId = deadline.getChatId();
+        int messageId = deadline.getMessageId();
+        return storage.closePoll(chatId, messageId).whenComplete((poll, e) -> {
+            if (e != null) {
+                updateErrors.increment("poll_close");
+                EventJournal.record(EventJournal.Type.POLL_CLOSE, EventJournal.FAILED, chatId, 0, System.nanoTime() - start, "poll " + messageId);
+            }
+        }).thenCompose(poll -> poll != null ? publishClosed(poll, chatId, messageId, start) : CompletableFuture.completedFuture(null));
+    }
+
+    private CompletableFuture<?> publishClosed(PollIndex.Entry poll, long chatId, int messageId, long start) {
+
+        Logger.log("Closing poll " + messageId + " in " + chatId, Logger.INFO);
+        EditMessageText closed = PollMessages.renderClosed(poll)
+                .setChatId(chatId)
+                .setMessageId(messageId);
+        SendMessage results = new SendMessage()
+                .setChatId(chatId)
+                .setReplyToMessageId(messageId)
+                .setText(PollMessages.results(poll));
+
+        CompletableFuture<?> edited = outboundQueue.submit(chatId, closed, OutboundQueue.Priority.LOW);
+        CompletableFuture<?> posted = outboundQueue.submit(chatId, results, OutboundQueue.Priority.NORMAL);
+        return CompletableFuture.allOf(edited, posted).whenComplete((result, e) -> {
+            if (e != null) {
+                updateErrors.increment("poll_close");
+                Logger.log(unwrap(e).getMessage(), Logger.ERROR);
+            }
+            EventJournal.record(EventJournal.Type.POLL_CLOSE, e == null ? EventJournal.OK : EventJournal.FAILED, chatId, 0,
+                    System.nanoTime() - start, "poll " + messageId);
+        });
+    }
+
+    private CompletableFuture<?> remindPoll(PollDeadline deadline) {
+        long start = System.nanoTime();
+        return storage.getPoll(deadline.getChatId(), deadline.getMessageId()).thenCompose(poll -> remindPoll(deadline, poll, start));
+    }
+
+    private CompletableFuture<?> remindPoll(PollDeadline deadline, PollIndex.Entry poll, long start) {
+        if (poll == null || poll.isClosed())
+            return CompletableFuture.completedFuture(null);
+
+        List<String> nonVoters = new ArrayList<>();
+        for (Map.Entry<String, String> user : poll.getUsers().entrySet())
+            if ("new".equals(user.getValue()))
+                nonVoters.add(user.getKey());
+        if (nonVoters.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        SendMessage reminder = new SendMessage()
+                .setChatId(deadline.getChatId())
+                .setReplyToMessageId(deadline.getMessageId())
+                .enableHtml(true)
+                .setText(PollMessages.reminder(poll, nonVoters, GruBotConfig.POLL_REMINDER_MENTIONS, deadline.getDeadline() - System.currentTimeMillis()));
+        return outboundQueue.submit(deadline.getChatId(), reminder, OutboundQueue.Priority.NORMAL).whenComplete((result, e) -> {
+            if (e != null)
+                Logger.log(unwrap(e).getMessage(), Logger.ERROR);
+            EventJournal.record(EventJournal.Type.REMINDER, e == null ? EventJournal.OK : EventJournal.FAILED, deadline.getChatId(), 0,
+                    System.nanoTime() - start, "poll " + deadline.getMessageId() + " non-voters " + nonVoters.size());
+        });
+    }
+
+    private CompletableFuture<?> pinAction(Update update, Message actionMessage) {
+        Message message = update.getMessage();
         if (message.getChat().isGroupChat())
-            sendTextMessage(update, "Закреплять сообщения можно только в супер-чатах.\nИзмените группу для активации данного функционала");
-        else {
-            PinChatMessage pinChatMessage = new PinChatMessage()
-                    .setChatId(message.getChatId())
-                    .setMessageId(voteMessage.getMessageId());
-            execute(pinChatMessage);
-        }
+            return sendTextMessage(update, "Закреплять сообщения можно только в супер-чатах.\nИзмените группу для активации данного функционала");
 
-        try {
-            firestore.setMessageIdToAction(voteMessage.getMessageId(), (ApiFuture<DocumentReference>) vote.get("reference"));
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
-        }
+        PinChatMessage pinChatMessage = new PinChatMessage()
+                .setChatId(message.getChatId())
+                .setMessageId(actionMessage.getMessageId());
+        return outboundQueue.submit(message.getChatId(), pinChatMessage, OutboundQueue.Priority.NORMAL);
     }
 
-    private Message sendTextMessage(Update update, String text) throws TelegramApiException {
+    private CompletableFuture<Message> sendTextMessage(Update update, String text) {
         SendMessage sendMessage = new SendMessage()
                 .setText(text)
                 .setChatId(update.getMessage().getChatId());
 
-        return execute(sendMessage);
+        return outboundQueue.submit(update.getMessage().getChatId(), sendMessage, OutboundQueue.Priority.NORMAL);
+    }
+
+    private void sendNotice(Update update, String text) {
+        sendTextMessage(update, text).whenComplete((result, e) -> {
+            if (e != null)
+                Logger.log(unwrap(e).getMessage(), Logger.ERROR);
+        });
+    }
+
+    private static CompletableFuture<?> failed(Throwable e) {
+        CompletableFuture<Object> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e);
+        return failed;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null)
+            e = e.getCause();
+        return e;
     }
 
     public InlineKeyboardMarkup getVoteKeyboard(HashMap<String, String> options) {
@@ -239,15 +642,9 @@ public class GruBot extends TelegramLongPollingBot {
 
     private boolean canUserCreateActions(Message message) {
         try {
-            GetChatMember getChatMember = new GetChatMember()
-                    .setUserId(message.getFrom().getId())
-                    .setChatId(message.getChatId());
-
-            ChatMember chatMember = execute(getChatMember);
-            if (chatMember != null) {
-                String memberStatus = chatMember.getStatus();
+            String memberStatus = adminRightsCache.getStatus(message.getChatId(), message.getFrom().getId());
+            if (memberStatus != null)
                 return memberStatus.equals("creator") || memberStatus.equals("administrator");
-            }
 
             return false;
         } catch (Exception e) {
@@ -256,4 +653,13 @@ public class GruBot extends TelegramLongPollingBot {
             return false;
         }
     }
+
+    private String loadMemberStatus(long chatId, int userId) throws TelegramApiException {
+        GetChatMember getChatMember = new GetChatMember()
+                .setUserId(userId)
+                .setChatId(chatId);
+
+        ChatMember chatMember = outboundQueue.execute(chatId, getChatMember, OutboundQueue.Priority.HIGH);
+        return chatMember != null ? chatMember.getStatus() : null;
+    }
 }
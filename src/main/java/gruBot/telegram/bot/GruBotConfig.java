@@ -1,7 +1,123 @@
 package gruBot.telegram.bot;
 
+import gruBot.telegram.logger.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public class GruBotConfig {
+    private static final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
     public static String BOT_TOKEN;
     public static String BOT_USERNAME;
     public static String PROJECT_ID;
+
+    public static final String POLLING_MODE = "polling";
+    public static final String WEBHOOK_MODE = "webhook";
+    public static final String ROUTER_MODE = "router";
+    public static final String WORKER_MODE = "worker";
+    public static String UPDATES_MODE = POLLING_MODE;
+    public static String WEBHOOK_URL = "";
+    public static String WEBHOOK_HOST = "127.0.0.1";
+    public static int WEBHOOK_PORT = 8443;
+    public static String WEBHOOK_PATH = "";
+    public static String WEBHOOK_SECRET = "";
+    public static int WEBHOOK_THREADS = 4;
+    public static int WEBHOOK_QUEUE_SIZE = 1000;
+
+    public static String CLUSTER_HOST = "127.0.0.1";
+    public static int CLUSTER_PORT = 8444;
+    public static String CLUSTER_SECRET = "";
+    public static String CLUSTER_ROUTER_URL = "http://127.0.0.1:8444";
+    public static String CLUSTER_NODE_URL = "";
+    public static String CLUSTER_NODES = "";
+    public static long CLUSTER_HEARTBEAT = 5;
+    public static long CLUSTER_NODE_TIMEOUT = 15;
+    public static int CLUSTER_VIRTUAL_NODES = 128;
+
+    public static final String FIRESTORE_STORAGE = "firestore";
+    public static final String LOCAL_STORAGE = "local";
+    public static String STORAGE_BACKEND = FIRESTORE_STORAGE;
+    public static String LOCAL_STORAGE_DIR = "./data";
+    public static long LOCAL_STORAGE_FLUSH = 10;
+    public static long LOCAL_STORAGE_COMPACT_RECORDS = 1000000;
+
+    public static int GROUP_CACHE_SIZE = 10000;
+    public static long GROUP_CACHE_TTL = 3600;
+
+    public static int DISPATCHER_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    public static int DISPATCHER_QUEUE_SIZE = 1000;
+    public static int DISPATCHER_PRIORITY_QUEUE_SIZE = 1000;
+    public static long CALLBACK_STALE_AFTER = 15000;
+    public static double LOAD_SHED_THRESHOLD = 0.5;
+
+    public static int ADMIN_CACHE_SIZE = 10000;
+    public static long ADMIN_CACHE_TTL = 300;
+
+    public static long POLL_EDIT_INTERVAL = 1000;
+    public static int POLL_EDIT_THREADS = 4;
+
+    public static long POLL_ACTIVE_DAYS = 14;
+    public static long POLL_LISTENER_REFRESH = 360;
+    public static long POLL_LISTENER_RETRY = 30;
+
+    public static long POLL_DEADLINE_TICK = 1000;
+    public static int POLL_DEADLINE_WHEEL_SIZE = 4096;
+    public static int POLL_DEADLINE_CONCURRENCY = 64;
+    public static int POLL_DEADLINE_PAGE_SIZE = 500;
+    public static int POLL_REMINDER_MENTIONS = 30;
+
+    public static String LOG_LEVEL = Logger.INFO;
+    public static String LOG_OVERFLOW = Logger.OVERFLOW_DROP;
+
+    public static int OUTBOUND_THREADS = 8;
+    public static int OUTBOUND_QUEUE_SIZE = 10000;
+    public static double OUTBOUND_GLOBAL_RATE = 30;
+    public static double OUTBOUND_CHAT_BURST = 3;
+    public static double OUTBOUND_CHAT_RATE = 20;
+
+    public static int TELEGRAM_POOL_SIZE = 32;
+    public static int TELEGRAM_POOL_PER_ROUTE = 32;
+    public static long TELEGRAM_CONNECT_TIMEOUT = 5000;
+    public static long TELEGRAM_READ_TIMEOUT = 15000;
+    public static long TELEGRAM_ACQUIRE_TIMEOUT = 5000;
+    public static long TELEGRAM_KEEP_ALIVE = 60;
+
+    public static int WRITE_BATCH_SIZE = 100;
+    public static long WRITE_BATCH_WINDOW = 50;
+
+    public static boolean WARMUP_ENABLED = false;
+    public static double WARMUP_READY_FRACTION = 1.0;
+    public static long WARMUP_TIMEOUT = 120;
+
+    public static int SHARDED_ACTION_THRESHOLD = 5000;
+    public static int SHARDED_ACTION_USERS_PER_SHARD = 5000;
+    public static int SHARDED_ACTION_COUNTERS = 10;
+
+    public static boolean JOURNAL_ENABLED = false;
+    public static String JOURNAL_DIR = "./journal";
+    public static int JOURNAL_SEGMENT_SIZE = 64;
+    public static int JOURNAL_RETENTION_SEGMENTS = 32;
+    public static long JOURNAL_RETENTION_HOURS = 168;
+    public static long JOURNAL_FLUSH = 1000;
+    public static boolean JOURNAL_UPDATE_PAYLOADS = false;
+
+    public static String METRICS_HOST = "127.0.0.1";
+    public static int METRICS_PORT = 0;
+
+    public static boolean CONFIG_RELOAD = true;
+
+    public static void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public static void changed() {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                Logger.log("Applying config failed: " + e.getMessage(), Logger.ERROR);
+            }
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package gruBot.telegram.bot;
+
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.storage.PollDeadline;
+import gruBot.telegram.storage.Storage;
+import gruBot.telegram.utils.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PollDeadlineScheduler {
+    private static final int MAX_CLOSE_ATTEMPTS = 5;
+    private static final long CLOSE_RETRY_MILLIS = 30000;
+
+    private final TimingWheel<Timer> wheel;
+    private final long tickMillis;
+    private final Handler handler;
+    private final Semaphore inFlight;
+    private final ConcurrentHashMap<String, List<TimingWheel.Timeout<Timer>>> timers = new ConcurrentHashMap<>();
+
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong reminded = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    public PollDeadlineScheduler(long tickMillis, int wheelSize, int maxInFlight, Handler handler) {
+        this.handler = handler;
+        this.tickMillis = Math.max(1, tickMillis);
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.wheel = new TimingWheel<>("poll-deadline-wheel", tickMillis, wheelSize, this::fire);
+    }
+
+    public void schedule(PollDeadline deadline) {
+        long now = System.currentTimeMillis();
+        List<TimingWheel.Timeout<Timer>> scheduled = new ArrayList<>();
+        for (long reminder : deadline.getReminders())
+            if (reminder > now && reminder < deadline.getDeadline())
+                scheduled.add(wheel.schedule(new Timer(deadline, true, 1), reminder));
+        scheduled.add(wheel.schedule(new Timer(deadline, false, 1), deadline.getDeadline()));
+
+        List<TimingWheel.Timeout<Timer>> previous = timers.put(key(deadline.getChatId(), deadline.getMessageId()), scheduled);
+        if (previous != null)
+            for (TimingWheel.Timeout<Timer> timeout : previous)
+                timeout.cancel();
+    }
+
+    public void cancel(long chatId, int messageId) {
+        List<TimingWheel.Timeout<Timer>> scheduled = timers.remove(key(chatId, messageId));
+        if (scheduled != null)
+            for (TimingWheel.Timeout<Timer> timeout : scheduled)
+                timeout.cancel();
+    }
+
+    public void restore(Storage storage) {
+        Thread thread = new Thread(() -> {
+            Logger.log("Restoring poll deadlines...", Logger.INFO);
+            long start = System.nanoTime();
+            try {
+                storage.loadPollDeadlines(deadline -> {
+                    schedule(deadline);
+                    restored.incrementAndGet();
+                });
+                Logger.log("Restored " + restored.get() + " poll deadlines in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms",
+                        Logger.INFO);
+            } catch (Exception e) {
+                Logger.log("Failed to restore poll deadlines: " + e.getMessage(), Logger.ERROR);
+            }
+        }, "poll-deadline-restore");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long getPending() {
+        return wheel.getPending();
+    }
+
+    public long getClosed() {
+        return closed.get();
+    }
+
+    public long getReminded() {
+        return reminded.get();
+    }
+
+    public long getRestored() {
+        return restored.get();
+    }
+
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    private void fire(Timer timer) {
+        PollDeadline deadline = timer.deadline;
+        if (!handler.owns(deadline.getChatId())) {
+            if (!timer.reminder)
+                finish(timer);
+            return;
+        }
+        if (!inFlight.tryAcquire()) {
+            defer(timer);
+            return;
+        }
+
+        CompletableFuture<?> done;
+        try {
+            done = timer.reminder ? handler.remind(deadline) : handler.close(deadline);
+        } catch (Exception e) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            done = failed;
+        }
+
+        done.whenComplete((result, e) -> {
+            inFlight.release();
+            if (e != null && unwrap(e) instanceof RejectedExecutionException) {
+                defer(timer);
+                return;
+            }
+
+            if (e == null)
+                (timer.reminder ? reminded : closed).incrementAndGet();
+            if (!timer.reminder) {
+                if (e == null)
+                    finish(timer);
+                else
+                    retryClose(timer);
+            }
+        });
+    }
+
+    private void defer(Timer timer) {
+        deferred.incrementAndGet();
+        reschedule(timer, timer, System.currentTimeMillis() + tickMillis);
+    }
+
+    private void retryClose(Timer timer) {
+        PollDeadline deadline = timer.deadline;
+        if (timer.attempt >= MAX_CLOSE_ATTEMPTS) {
+            Logger.log("Giving up closing poll " + deadline.getMessageId() + " in " + deadline.getChatId() + " after " + timer.attempt + " attempts",
+                    Logger.ERROR);
+            finish(timer);
+            return;
+        }
+
+        Logger.log("Closing poll " + deadline.getMessageId() + " in " + deadline.getChatId() + " failed, retrying in "
+                + TimeUnit.MILLISECONDS.toSeconds(CLOSE_RETRY_MILLIS) + " s", Logger.WARNING);
+        reschedule(timer, new Timer(deadline, false, timer.attempt + 1), System.currentTimeMillis() + CLOSE_RETRY_MILLIS);
+    }
+
+    private void reschedule(Timer timer, Timer next, long at) {
+        PollDeadline deadline = timer.deadline;
+        TimingWheel.Timeout<Timer> retry = wheel.schedule(next, at);
+        boolean[] current = new boolean[1];
+        timers.computeIfPresent(key(deadline.getChatId(), deadline.getMessageId()), (key, scheduled) -> {
+            current[0] = contains(scheduled, timer);
+            if (current[0])
+                scheduled.add(retry);
+            return scheduled;
+        });
+        if (!current[0])
+            retry.cancel();
+    }
+
+    private void finish(Timer timer) {
+        PollDeadline deadline = timer.deadline;
+        timers.computeIfPresent(key(deadline.getChatId(), deadline.getMessageId()),
+                (key, scheduled) -> contains(scheduled, timer) ? null : scheduled);
+    }
+
+    private static boolean contains(List<TimingWheel.Timeout<Timer>> scheduled, Timer timer) {
+        for (TimingWheel.Timeout<Timer> timeout : scheduled)
+            if (timeout.getTask() == timer)
+                return true;
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static String key(long chatId, int messageId) {
+        return chatId + "_" + messageId;
+    }
+
+    public interface Handler {
+        boolean owns(long chatId);
+
+        CompletableFuture<?> close(PollDeadline deadline) throws Exception;
+
+        CompletableFuture<?> remind(PollDeadline deadline) throws Exception;
+    }
+
+    private static class Timer {
+        private final PollDeadline deadline;
+        private final boolean reminder;
+        private final int attempt;
+
+        private Timer(PollDeadline deadline, boolean reminder, int attempt) {
+            this.deadline = deadline;
+            this.reminder = reminder;
+            this.attempt = attempt;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package gruBot.telegram.bot;
+
+import gruBot.telegram.logger.Logger;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PollEditScheduler {
+    private volatile long minIntervalMillis;
+    private final Sender sender;
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public PollEditScheduler(long minIntervalMillis, int threads, Sender sender) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.sender = sender;
+        this.executor = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "poll-edit-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void submit(EditMessageText edit) {
+        submitted.incrementAndGet();
+        Slot slot = slots.computeIfAbsent(key(edit.getChatId(), edit.getMessageId()), key -> new Slot());
+        synchronized (slot) {
+            if (slot.pending != null) {
+                slot.pending = edit;
+                coalesced.incrementAndGet();
+                return;
+            }
+
+            slot.pending = edit;
+            schedule(slot);
+        }
+    }
+
+    public void setMinInterval(long minIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+    }
+
+    public void setThreads(int threads) {
+        executor.setCorePoolSize(threads);
+    }
+
+    public void forget(long chatId, int messageId) {
+        Slot slot = slots.remove(key(String.valueOf(chatId), messageId));
+        if (slot != null)
+            synchronized (slot) {
+                slot.pending = null;
+            }
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    private void schedule(Slot slot) {
+        long delay = Math.max(0, slot.lastFlush + minIntervalMillis - System.currentTimeMillis());
+        executor.schedule(() -> flush(slot), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(Slot slot) {
+        EditMessageText edit;
+        synchronized (slot) {
+            if (slot.inFlight) {
+                executor.schedule(() -> flush(slot), minIntervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            edit = slot.pending;
+            slot.pending = null;
+            if (edit == null)
+                return;
+
+            if (Objects.equals(edit.getText(), slot.lastText) && Objects.equals(edit.getReplyMarkup(), slot.lastMarkup)) {
+                skipped.incrementAndGet();
+                return;
+            }
+
+            slot.inFlight = true;
+            slot.lastFlush = System.currentTimeMillis();
+        }
+
+        CompletableFuture<?> done;
+        try {
+            done = sender.send(edit);
+        } catch (Exception e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            done = failed;
+        }
+
+        done.whenComplete((result, e) -> {
+            synchronized (slot) {
+                slot.inFlight = false;
+                if (e == null) {
+                    slot.lastText = edit.getText();
+                    slot.lastMarkup = edit.getReplyMarkup();
+                }
+            }
+            if (e == null)
+                sent.incrementAndGet();
+            else
+                Logger.log(e.getMessage(), Logger.ERROR);
+        });
+    }
+
+    private static String key(String chatId, Integer messageId) {
+        return chatId + "_" + messageId;
+    }
+
+    public interface Sender {
+        CompletableFuture<?> send(EditMessageText edit) throws Exception;
+    }
+
+    private static class Slot {
+        private EditMessageText pending;
+        private boolean inFlight;
+        private long lastFlush;
+        private String lastText;
+        private InlineKeyboardMarkup lastMarkup;
+    }
+}
@@ -0,0 +1,137 @@
+package gruBot.telegram.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class AdminRightsCache {
+    private volatile int maxSize;
+    private volatile long ttlMillis;
+    private final Loader loader;
+    private final LinkedHashMap<Key, Entry> statuses;
+    private final ConcurrentHashMap<Key, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    public AdminRightsCache(int maxSize, long ttlMillis, Loader loader) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.loader = loader;
+        this.statuses = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, AdminRightsCache.Entry> eldest) {
+                return size() > AdminRightsCache.this.maxSize;
+            }
+        };
+    }
+
+    public String getStatus(long chatId, int userId) throws Exception {
+        Key key = new Key(chatId, userId);
+        Entry entry;
+        synchronized (statuses) {
+            entry = statuses.get(key);
+        }
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt <= ttlMillis)
+            return entry.status;
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> running = pending.putIfAbsent(key, future);
+        if (running != null)
+            return running.get();
+
+        try {
+            String status = loader.load(chatId, userId);
+            if (status != null)
+                synchronized (statuses) {
+                    statuses.put(key, new Entry(status));
+                }
+            future.complete(status);
+            return status;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key, future);
+        }
+    }
+
+    public void setLimits(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        synchronized (statuses) {
+            purgeExpired();
+            Iterator<Key> eldest = statuses.keySet().iterator();
+            while (statuses.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    public void invalidate(long chatId, int userId) {
+        synchronized (statuses) {
+            statuses.remove(new Key(chatId, userId));
+        }
+    }
+
+    public void invalidateChat(long chatId) {
+        synchronized (statuses) {
+            statuses.keySet().removeIf(key -> key.chatId == chatId);
+        }
+    }
+
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (statuses) {
+            Iterator<Map.Entry<Key, Entry>> iterator = statuses.entrySet().iterator();
+            while (iterator.hasNext())
+                if (now - iterator.next().getValue().loadedAt > ttlMillis)
+                    iterator.remove();
+        }
+    }
+
+    public int size() {
+        synchronized (statuses) {
+            return statuses.size();
+        }
+    }
+
+    public interface Loader {
+        String load(long chatId, int userId) throws Exception;
+    }
+
+    private static class Entry {
+        private final String status;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private Entry(String status) {
+            this.status = status;
+        }
+    }
+
+    private static class Key {
+        private final long chatId;
+        private final int userId;
+
+        private Key(long chatId, int userId) {
+            this.chatId = chatId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            return chatId == key.chatId && userId == key.userId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(chatId) + userId;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package gruBot.telegram.cache;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GroupCache {
+    private int maxSize;
+    private long ttlMillis;
+    private final LinkedHashMap<Long, Entry> groups;
+
+    public GroupCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.groups = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, GroupCache.Entry> eldest) {
+                return size() > GroupCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized Entry get(long chatId) {
+        Entry entry = groups.get(chatId);
+        if (entry == null)
+            return null;
+
+        if (System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+            groups.remove(chatId);
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized Entry put(long chatId, DocumentReference reference, Map<String, Boolean> users) {
+        Entry entry = new Entry(reference, users);
+        groups.put(chatId, entry);
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Entry put(DocumentSnapshot document) {
+        Object chatId = document.get("chatId");
+        if (chatId == null)
+            return null;
+
+        Map<String, Boolean> users = (Map<String, Boolean>) document.get("users");
+        return put(Long.valueOf(chatId.toString()), document.getReference(), users);
+    }
+
+    public synchronized void setLimits(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        Iterator<Long> eldest = groups.keySet().iterator();
+        while (groups.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public synchronized void remove(long chatId) {
+        groups.remove(chatId);
+    }
+
+    public synchronized void remove(long chatId, Entry entry) {
+        groups.remove(chatId, entry);
+    }
+
+    public synchronized int size() {
+        return groups.size();
+    }
+
+    public static class Entry {
+        private final DocumentReference reference;
+        private final Set<String> users = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private final long loadedAt = System.currentTimeMillis();
+        private volatile CompletableFuture<Void> created = CompletableFuture.completedFuture(null);
+
+        private Entry(DocumentReference reference, Map<String, Boolean> users) {
+            this.reference = reference;
+            if (users != null)
+                for (Map.Entry<String, Boolean> user : users.entrySet())
+                    if (Boolean.TRUE.equals(user.getValue()))
+                        this.users.add(user.getKey());
+        }
+
+        public DocumentReference getReference() {
+            return reference;
+        }
+
+        public CompletableFuture<Void> getCreated() {
+            return created;
+        }
+
+        public void setCreated(CompletableFuture<Void> created) {
+            this.created = created;
+        }
+
+        public boolean hasUser(long userId) {
+            return users.contains(String.valueOf(userId));
+        }
+
+        public boolean addUser(long userId) {
+            return users.add(String.valueOf(userId));
+        }
+
+        public void removeUser(long userId) {
+            users.remove(String.valueOf(userId));
+        }
+
+        public Map<String, Boolean> getUsers() {
+            HashMap<String, Boolean> result = new HashMap<>();
+            for (String user : users)
+                result.put(user, true);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package gruBot.telegram.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+public class PollIndex {
+    private final ConcurrentHashMap<String, Entry> polls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Date> closed = new ConcurrentHashMap<>();
+
+    public Entry get(long chatId, int messageId) {
+        return polls.get(key(chatId, messageId));
+    }
+
+    public Entry put(long chatId, int messageId, String path, Date date, String title, Map<String, String> voteOptions, Map<String, ?> users) {
+        return put(chatId, messageId, path, date, title, voteOptions, users, 0, 0, null);
+    }
+
+    public Entry put(long chatId, int messageId, String path, Date date, String title, Map<String, String> voteOptions, Map<String, ?> users,
+                     Date deadline) {
+        return put(chatId, messageId, path, date, title, voteOptions, users, 0, 0, deadline);
+    }
+
+    public Entry put(long chatId, int messageId, String path, Date date, String title, Map<String, String> voteOptions, Map<String, ?> users,
+                     int userShards, int counterShards, Date deadline) {
+        return put(new Entry(path, chatId, messageId, date, title, voteOptions, userShards, counterShards, deadline, false), users);
+    }
+
+    private Entry put(Entry entry, Map<String, ?> users) {
+        entry.setUsers(users);
+        polls.put(key(entry.chatId, entry.messageId), entry);
+        return entry;
+    }
+
+    public Entry load(long chatId, int messageId, String path, Date date, String title, Map<String, String> voteOptions, Map<String, ?> users,
+                      int userShards, int counterShards, Date deadline) {
+        if (isClosed(chatId, messageId))
+            return null;
+
+        Entry entry = get(chatId, messageId);
+        if (entry != null)
+            return entry;
+
+        entry = put(new Entry(path, chatId, messageId, date, title, voteOptions, userShards, counterShards, deadline,
+                userShards > 0 && counterShards > 0), users);
+        if (isClosed(chatId, messageId)) {
+            polls.remove(key(chatId, messageId), entry);
+            return null;
+        }
+        return entry;
+    }
+
+    public Entry update(long chatId, int messageId, Map<String, ?> users) {
+        Entry entry = get(chatId, messageId);
+        if (entry != null)
+            entry.setUsers(users);
+        return entry;
+    }
+
+    public Entry close(long chatId, int messageId) {
+        Entry entry = polls.get(key(chatId, messageId));
+        closed.put(key(chatId, messageId), entry != null && entry.date != null ? entry.date : new Date());
+        return polls.remove(key(chatId, messageId));
+    }
+
+    public boolean isClosed(long chatId, int messageId) {
+        return closed.containsKey(key(chatId, messageId));
+    }
+
+    public Entry remove(long chatId, int messageId) {
+        return polls.remove(key(chatId, messageId));
+    }
+
+    public List<Entry> removeOlderThan(Date cutoff) {
+        List<Entry> removed = new ArrayList<>();
+        for (Entry entry : polls.values())
+            if (entry.date != null && entry.date.before(cutoff) && polls.remove(key(entry.chatId, entry.messageId), entry))
+                removed.add(entry);
+        closed.values().removeIf(date -> date.before(cutoff));
+        return removed;
+    }
+
+    public int size() {
+        return polls.size();
+    }
+
+    private static String key(long chatId, int messageId) {
+        return chatId + "_" + messageId;
+    }
+
+    public static class Entry {
+        private final String path;
+        private final long chatId;
+        private final int messageId;
+        private final Date date;
+        private final String title;
+        private final HashMap<String, String> voteOptions;
+        private final ConcurrentHashMap<String, String> users = new ConcurrentHashMap<>();
+        private final PollTally tally = new PollTally();
+        private final int userShards;
+        private final int counterShards;
+        private final boolean partial;
+        private final ConcurrentHashMap<Integer, CompletableFuture<Void>> shardLoads = new ConcurrentHashMap<>();
+        private final Date deadline;
+        private boolean closed;
+        private volatile CompletableFuture<Void> countsLoaded = CompletableFuture.completedFuture(null);
+
+        private Entry(String path, long chatId, int messageId, Date date, String title, Map<String, String> voteOptions,
+                      int userShards, int counterShards, Date deadline, boolean partial) {
+            this.path = path;
+            this.chatId = chatId;
+            this.messageId = messageId;
+            this.date = date;
+            this.title = title;
+            this.voteOptions = voteOptions != null ? new HashMap<>(voteOptions) : new HashMap<>();
+            this.userShards = userShards;
+            this.counterShards = counterShards;
+            this.partial = partial;
+            this.deadline = deadline;
+        }
+
+        public void setUsers(Map<String, ?> users) {
+            if (users == null)
+                return;
+
+            for (Map.Entry<String, ?> user : users.entrySet())
+                setAnswer(user.getKey(), String.valueOf(user.getValue()));
+        }
+
+        private synchronized String setAnswer(String userId, String answer) {
+            if (closed)
+                return users.get(userId);
+
+            String previous = users.put(userId, answer);
+            if (!answer.equals(previous))
+                tally.move(previous, answer);
+            return previous;
+        }
+
+        public String vote(int userId, int pollOptionNumber) {
+            return setAnswer(String.valueOf(userId), String.valueOf(pollOptionNumber));
+        }
+
+        public synchronized void addUsers(Map<String, ?> users) {
+            if (users == null)
+                return;
+
+            for (Map.Entry<String, ?> user : users.entrySet())
+                this.users.putIfAbsent(user.getKey(), String.valueOf(user.getValue()));
+        }
+
+        public synchronized void addCounts(Map<String, Long> counts) {
+            for (Map.Entry<String, Long> count : counts.entrySet())
+                tally.add(count.getKey(), count.getValue().intValue());
+        }
+
+        public CompletableFuture<Void> loadShard(int shard, Supplier<CompletableFuture<Void>> loader) {
+            CompletableFuture<Void> load = shardLoads.computeIfAbsent(shard, key -> loader.get());
+            load.whenComplete((result, e) -> {
+                if (e != null)
+                    shardLoads.remove(shard, load);
+            });
+            return load;
+        }
+
+        public void setCountsLoaded(CompletableFuture<Void> countsLoaded) {
+            this.countsLoaded = countsLoaded;
+        }
+
+        public CompletableFuture<Void> getCountsLoaded() {
+            return countsLoaded;
+        }
+
+        public synchronized void revertVote(int userId, int pollOptionNumber, String previous) {
+            String user = String.valueOf(userId);
+            String answer = String.valueOf(pollOptionNumber);
+            if (closed || !answer.equals(users.get(user)) || answer.equals(previous))
+                return;
+
+            if (previous != null)
+                users.put(user, previous);
+            else
+                users.remove(user);
+            tally.decrement(answer);
+            if (previous != null)
+                tally.increment(previous);
+        }
+
+        public synchronized boolean close() {
+            if (closed)
+                return false;
+            closed = true;
+            return true;
+        }
+
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+
+        public Map<String, Integer> getResults() {
+            Map<String, Integer> results = new HashMap<>();
+            for (String option : voteOptions.keySet())
+                results.put(option, tally.get(option.trim()));
+            results.put("new", tally.get("new"));
+            return results;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getChatId() {
+            return chatId;
+        }
+
+        public int getMessageId() {
+            return messageId;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Date getDeadline() {
+            return deadline;
+        }
+
+        public HashMap<String, String> getVoteOptions() {
+            return voteOptions;
+        }
+
+        public Map<String, String> getUsers() {
+            return users;
+        }
+
+        public PollTally getTally() {
+            return tally;
+        }
+
+        public boolean isSharded() {
+            return userShards > 0;
+        }
+
+        public int getUserShards() {
+            return userShards;
+        }
+
+        public int getCounterShards() {
+            return counterShards;
+        }
+
+        public boolean isPartial() {
+            return partial;
+        }
+
+    }
+}
@@ -0,0 +1,33 @@
+package gruBot.telegram.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PollTally {
+    private final ConcurrentHashMap<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    public void increment(String answer) {
+        counts.computeIfAbsent(answer, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void decrement(String answer) {
+        AtomicInteger count = counts.get(answer);
+        if (count != null)
+            count.decrementAndGet();
+    }
+
+    public void add(String answer, int delta) {
+        counts.computeIfAbsent(answer, key -> new AtomicInteger()).addAndGet(delta);
+    }
+
+    public void move(String from, String to) {
+        if (from != null)
+            decrement(from);
+        increment(to);
+    }
+
+    public int get(String answer) {
+        AtomicInteger count = counts.get(answer);
+        return count != null ? count.get() : 0;
+    }
+}
@@ -0,0 +1,112 @@
+package gruBot.telegram.cluster;
+
+import gruBot.telegram.logger.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ClusterMember {
+    public static final String SECRET_HEADER = "X-GruBot-Cluster-Secret";
+
+    private final String routerUrl;
+    private final String nodeUrl;
+    private final String secret;
+    private final long heartbeatMillis;
+    private final int virtualNodes;
+    private final ScheduledExecutorService scheduler;
+    private volatile HashRing ring = new HashRing(Collections.emptySet(), 1);
+
+    public ClusterMember(String routerUrl, String nodeUrl, String secret, long heartbeatMillis, int virtualNodes) {
+        this.routerUrl = routerUrl.endsWith("/") ? routerUrl.substring(0, routerUrl.length() - 1) : routerUrl;
+        this.nodeUrl = nodeUrl;
+        this.secret = secret;
+        this.heartbeatMillis = heartbeatMillis;
+        this.virtualNodes = virtualNodes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        Logger.log("Joining cluster at " + routerUrl + " as " + nodeUrl, Logger.INFO);
+        heartbeat();
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::leave, "cluster-leave"));
+    }
+
+    public boolean owns(long chatId) {
+        HashRing current = ring;
+        return current.isEmpty() || !current.getNodes().contains(nodeUrl) || nodeUrl.equals(current.owner(chatId));
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    private void heartbeat() {
+        try {
+            updateRing(post("/cluster/heartbeat"));
+        } catch (IOException e) {
+            Logger.log("Cluster heartbeat failed: " + e.getMessage(), Logger.WARNING);
+        }
+    }
+
+    private void leave() {
+        scheduler.shutdownNow();
+        try {
+            post("/cluster/leave");
+            Logger.log("Left cluster", Logger.INFO);
+        } catch (IOException e) {
+            Logger.log("Leaving cluster failed: " + e.getMessage(), Logger.WARNING);
+        }
+    }
+
+    private void updateRing(String nodeList) {
+        Set<String> nodes = new HashSet<>();
+        for (String node : Arrays.asList(nodeList.split("\n")))
+            if (!node.trim().isEmpty())
+                nodes.add(node.trim());
+
+        if (nodes.equals(ring.getNodes()))
+            return;
+
+        ring = new HashRing(nodes, virtualNodes);
+        Logger.log("Cluster ring changed: " + ring.getNodes(), Logger.INFO);
+    }
+
+    private String post(String path) throws IOException {
+        byte[] body = nodeUrl.getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = (HttpURLConnection) new URL(routerUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(2000);
+        connection.setReadTimeout(2000);
+        connection.setRequestProperty(SECRET_HEADER, secret);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int status = connection.getResponseCode();
+        if (status != 200)
+            throw new IOException("router answered " + status);
+        try (InputStream response = connection.getInputStream()) {
+            Scanner scanner = new Scanner(response, "UTF-8").useDelimiter("\\A");
+            return scanner.hasNext() ? scanner.next() : "";
+        }
+    }
+}
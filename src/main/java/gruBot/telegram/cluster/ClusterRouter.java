@@ -0,0 +1,263 @@
+package gruBot.telegram.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ClusterRouter {
+    private static final Counter forwarded = Metrics.counter("grubot_router_updates_total", "Updates handled by the cluster router", "result");
+
+    private final HttpServer server;
+    private final HttpServer membershipServer;
+    private final byte[] secret;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final int virtualNodes;
+    private final long nodeTimeoutMillis;
+    private volatile HashRing ring;
+
+    public ClusterRouter(String host, int port, String path, int threads, int queueSize, String clusterHost, int clusterPort, String secret,
+                         Collection<String> staticNodes, int virtualNodes, long nodeTimeoutMillis) throws IOException {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.virtualNodes = virtualNodes;
+        this.nodeTimeoutMillis = nodeTimeoutMillis;
+        for (String node : staticNodes)
+            lastSeen.put(node, Long.MAX_VALUE);
+        this.ring = new HashRing(lastSeen.keySet(), virtualNodes);
+
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.setExecutor(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "cluster-router");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy()));
+        this.server.createContext(path, exchange -> {
+            if (path.equals(exchange.getRequestURI().getPath()))
+                handleUpdate(exchange);
+            else
+                respond(exchange, 404, "404");
+        });
+
+        this.membershipServer = HttpServer.create(new InetSocketAddress(clusterHost, clusterPort), 0);
+        this.membershipServer.createContext("/cluster/heartbeat", exchange -> authorized(exchange, this::handleHeartbeat));
+        this.membershipServer.createContext("/cluster/leave", exchange -> authorized(exchange, this::handleLeave));
+        this.membershipServer.createContext("/cluster/nodes", exchange -> authorized(exchange, nodes -> respond(nodes, 200, nodeList())));
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-router-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Metrics.gauge("grubot_router_nodes", "Worker nodes in the cluster ring", () -> ring.getNodes().size());
+    }
+
+    public void start() {
+        server.start();
+        membershipServer.start();
+        scheduler.scheduleWithFixedDelay(this::expireNodes, nodeTimeoutMillis, nodeTimeoutMillis / 2, TimeUnit.MILLISECONDS);
+        Logger.log("Cluster router is listening on " + server.getAddress() + ", membership on " + membershipServer.getAddress()
+                + " with nodes " + ring.getNodes(), Logger.INFO);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        membershipServer.stop(0);
+        server.stop(0);
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    private void handleUpdate(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "405");
+            return;
+        }
+
+        byte[] body = readBody(exchange);
+        long chatId;
+        try {
+            chatId = chatId(mapper.readTree(body));
+        } catch (IOException e) {
+            Logger.log("Malformed update: " + e.getMessage(), Logger.WARNING);
+            forwarded.increment("malformed");
+            respond(exchange, 400, "400");
+            return;
+        }
+
+        for (String node : ring.owners(chatId, 2)) {
+            HttpURLConnection connection;
+            try {
+                connection = connect(node, body.length);
+            } catch (IOException e) {
+                Logger.log("Connecting to " + node + " failed: " + e, Logger.WARNING);
+                forwarded.increment("unreachable");
+                continue;
+            }
+
+            try {
+                forward(connection, body);
+            } catch (IOException e) {
+                Logger.log("Forwarding to " + node + " failed after connecting: " + e, Logger.WARNING);
+                forwarded.increment("failed");
+                respond(exchange, 502, "502");
+                return;
+            }
+            forwarded.increment("forwarded");
+            respond(exchange, 200, "");
+            return;
+        }
+
+        forwarded.increment("unrouted");
+        respond(exchange, 503, "503");
+    }
+
+    private void authorized(HttpExchange exchange, HttpHandler handler) throws IOException {
+        String token = exchange.getRequestHeaders().getFirst(ClusterMember.SECRET_HEADER);
+        if (token == null || !MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8))) {
+            Logger.log("Rejected membership request from " + exchange.getRemoteAddress(), Logger.WARNING);
+            readBody(exchange);
+            respond(exchange, 403, "403");
+            return;
+        }
+        handler.handle(exchange);
+    }
+
+    private void handleHeartbeat(HttpExchange exchange) throws IOException {
+        String node = new String(readBody(exchange), StandardCharsets.UTF_8).trim();
+        if (node.isEmpty()) {
+            respond(exchange, 400, "400");
+            return;
+        }
+
+        Long previous = lastSeen.put(node, System.currentTimeMillis());
+        if (previous == null) {
+            Logger.log("Node " + node + " joined the cluster", Logger.INFO);
+            rebuildRing();
+        } else if (previous == Long.MAX_VALUE) {
+            lastSeen.put(node, Long.MAX_VALUE);
+        }
+        respond(exchange, 200, nodeList());
+    }
+
+    private void handleLeave(HttpExchange exchange) throws IOException {
+        String node = new String(readBody(exchange), StandardCharsets.UTF_8).trim();
+        if (lastSeen.remove(node) != null) {
+            Logger.log("Node " + node + " left the cluster", Logger.INFO);
+            rebuildRing();
+        }
+        respond(exchange, 200, nodeList());
+    }
+
+    private void expireNodes() {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        for (Map.Entry<String, Long> node : lastSeen.entrySet()) {
+            if (now - node.getValue() > nodeTimeoutMillis && lastSeen.remove(node.getKey(), node.getValue())) {
+                Logger.log("Node " + node.getKey() + " missed its heartbeats, removing it from the cluster", Logger.WARNING);
+                changed = true;
+            }
+        }
+        if (changed)
+            rebuildRing();
+    }
+
+    private synchronized void rebuildRing() {
+        ring = new HashRing(lastSeen.keySet(), virtualNodes);
+        Logger.log("Cluster ring rebalanced: " + ring.getNodes(), Logger.INFO);
+    }
+
+    private String nodeList() {
+        return String.join("\n", ring.getNodes());
+    }
+
+    private static HttpURLConnection connect(String node, int length) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(node).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(2000);
+        connection.setReadTimeout(5000);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(length);
+        connection.connect();
+        return connection;
+    }
+
+    private void forward(HttpURLConnection connection, byte[] body) throws IOException {
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int status = connection.getResponseCode();
+        InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (response != null)
+            drain(response);
+        if (status != 200)
+            throw new IOException("node answered " + status);
+    }
+
+    private static long chatId(JsonNode update) {
+        for (String field : new String[]{"message", "edited_message", "channel_post", "edited_channel_post"}) {
+            JsonNode chat = update.path(field).path("chat").path("id");
+            if (chat.canConvertToLong())
+                return chat.asLong();
+        }
+        JsonNode callbackChat = update.path("callback_query").path("message").path("chat").path("id");
+        if (callbackChat.canConvertToLong())
+            return callbackChat.asLong();
+        return 0;
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            byte[] buffer = new byte[1024];
+            while (body.read(buffer) != -1) {
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] response = text.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (response.length > 0)
+                out.write(response);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package gruBot.telegram.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class HashRing {
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final SortedSet<String> nodes;
+
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = Collections.unmodifiableSortedSet(new TreeSet<>(nodes));
+        for (String node : this.nodes)
+            for (int i = 0; i < virtualNodes; i++)
+                ring.put(hash(node + "#" + i), node);
+    }
+
+    public String owner(long chatId) {
+        List<String> owners = owners(chatId, 1);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    public List<String> owners(long chatId, int count) {
+        List<String> owners = new ArrayList<>(count);
+        if (ring.isEmpty())
+            return owners;
+
+        long hash = hash(String.valueOf(chatId));
+        for (Map.Entry<Long, String> entry : ring.tailMap(hash).entrySet()) {
+            if (owners.size() == count || owners.size() == nodes.size())
+                return owners;
+            if (!owners.contains(entry.getValue()))
+                owners.add(entry.getValue());
+        }
+        for (Map.Entry<Long, String> entry : ring.headMap(hash).entrySet()) {
+            if (owners.size() == count || owners.size() == nodes.size())
+                return owners;
+            if (!owners.contains(entry.getValue()))
+                owners.add(entry.getValue());
+        }
+        return owners;
+    }
+
+    public SortedSet<String> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++)
+                hash = (hash << 8) | (digest[i] & 0xff);
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package gruBot.telegram.dispatcher;
+
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UpdateDispatcher {
+    private static final Counter blocked = Metrics.counter("grubot_dispatcher_blocked_total", "Updates that waited for room in a full dispatcher queue", "lane");
+
+    private final Stripe[] stripes;
+
+    public UpdateDispatcher(int poolSize, int queueSize) {
+        this(poolSize, queueSize, queueSize);
+    }
+
+    public UpdateDispatcher(int poolSize, int queueSize, int priorityQueueSize) {
+        this.stripes = new Stripe[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            stripes[i] = new Stripe(i, queueSize, priorityQueueSize);
+            stripes[i].start();
+        }
+    }
+
+    public void dispatch(long chatId, Runnable task) throws InterruptedException {
+        dispatchAsync(chatId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public void dispatchAsync(long chatId, AsyncTask task) throws InterruptedException {
+        Stripe stripe = stripes[stripeIndex(chatId)];
+        Job job = new Job(chatId, true, task);
+        stripe.enqueued(chatId);
+        if (!stripe.queue.offer(job)) {
+            blocked.increment("normal");
+            Logger.log("Dispatcher queue " + stripe.index + " is full, waiting...", Logger.WARNING);
+            try {
+                stripe.queue.put(job);
+            } catch (InterruptedException e) {
+                stripe.dequeued(chatId);
+                throw e;
+            }
+        }
+        stripe.available.release();
+    }
+
+    public boolean tryDispatchAsync(long chatId, AsyncTask task) {
+        Stripe stripe = stripes[stripeIndex(chatId)];
+        stripe.enqueued(chatId);
+        if (!stripe.queue.offer(new Job(chatId, true, task))) {
+            stripe.dequeued(chatId);
+            return false;
+        }
+
+        stripe.available.release();
+        return true;
+    }
+
+    public boolean dispatchPriority(long chatId, AsyncTask task) {
+        Stripe stripe = stripes[stripeIndex(chatId)];
+        Job job = new Job(chatId, true, task);
+        if (stripe.hasQueued(chatId)) {
+            stripe.enqueued(chatId);
+            if (!stripe.queue.offer(job)) {
+                stripe.dequeued(chatId);
+                return false;
+            }
+        } else if (!stripe.priorityQueue.offer(job)) {
+            return false;
+        }
+
+        stripe.available.release();
+        return true;
+    }
+
+    public Executor executor(long chatId) {
+        Stripe stripe = stripes[stripeIndex(chatId)];
+        return stripe::callback;
+    }
+
+    public void drain() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(stripes.length);
+        for (Stripe stripe : stripes) {
+            stripe.queue.put(new Job(0, false, () -> {
+                latch.countDown();
+                return null;
+            }));
+            stripe.available.release();
+        }
+        latch.await();
+        while (getQueueDepth() > 0 || getSuspended() > 0)
+            Thread.sleep(1);
+    }
+
+    public double getLoad(long chatId) {
+        Stripe stripe = stripes[stripeIndex(chatId)];
+        return (double) (stripe.queue.size() + stripe.parked.get()) / stripe.capacity;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (int i = 0; i < stripes.length; i++)
+            depth += getQueueDepth(i);
+        return depth;
+    }
+
+    public int getQueueDepth(int stripe) {
+        return stripes[stripe].queue.size() + stripes[stripe].priorityQueue.size() + stripes[stripe].parked.get();
+    }
+
+    public int getSuspended() {
+        int suspended = 0;
+        for (Stripe stripe : stripes)
+            suspended += stripe.suspended.get();
+        return suspended;
+    }
+
+    public int getPoolSize() {
+        return stripes.length;
+    }
+
+    public void shutdown() {
+        for (Stripe stripe : stripes)
+            stripe.interrupt();
+    }
+
+    private int stripeIndex(long chatId) {
+        int hash = Long.hashCode(chatId);
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    public interface AsyncTask {
+        CompletableFuture<?> run() throws Exception;
+    }
+
+    private static class Job {
+        private final long chatId;
+        private final boolean ordered;
+        private final AsyncTask task;
+
+        private Job(long chatId, boolean ordered, AsyncTask task) {
+            this.chatId = chatId;
+            this.ordered = ordered;
+            this.task = task;
+        }
+    }
+
+    private static class Stripe extends Thread {
+        private final int index;
+        private final int capacity;
+        private final BlockingQueue<Job> queue;
+        private final BlockingQueue<Job> priorityQueue;
+        private final ConcurrentLinkedQueue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+        private final Semaphore available = new Semaphore(0);
+        private final HashMap<Long, ArrayDeque<Job>> waiting = new HashMap<>();
+        private final ConcurrentHashMap<Long, Integer> queued = new ConcurrentHashMap<>();
+        private final AtomicInteger parked = new AtomicInteger();
+        private final AtomicInteger suspended = new AtomicInteger();
+
+        private Stripe(int index, int queueSize, int priorityQueueSize) {
+            super("update-dispatcher-" + index);
+            this.index = index;
+            this.capacity = queueSize;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.priorityQueue = new ArrayBlockingQueue<>(priorityQueueSize);
+            setDaemon(true);
+        }
+
+        private void enqueued(long chatId) {
+            queued.merge(chatId, 1, Integer::sum);
+        }
+
+        private void dequeued(long chatId) {
+            queued.computeIfPresent(chatId, (key, count) -> count > 1 ? count - 1 : null);
+        }
+
+        private boolean hasQueued(long chatId) {
+            return queued.containsKey(chatId);
+        }
+
+        private void callback(Runnable runnable) {
+            callbacks.add(runnable);
+            available.release();
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                try {
+                    available.acquire();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                Runnable callback = callbacks.poll();
+                if (callback != null) {
+                    try {
+                        callback.run();
+                    } catch (Exception e) {
+                        Logger.log(e.getMessage(), Logger.ERROR);
+                    }
+                    continue;
+                }
+
+                Job job = priorityQueue.poll();
+                if (job == null) {
+                    job = queue.poll();
+                    if (job.ordered)
+                        dequeued(job.chatId);
+                }
+
+                ArrayDeque<Job> backlog = job.ordered ? waiting.get(job.chatId) : null;
+                if (backlog != null) {
+                    backlog.add(job);
+                    parked.incrementAndGet();
+                    continue;
+                }
+                start(job, null);
+            }
+        }
+
+        private boolean start(Job job, ArrayDeque<Job> backlog) {
+            CompletableFuture<?> pending;
+            try {
+                pending = job.task.run();
+            } catch (Exception e) {
+                Logger.log(e.getMessage(), Logger.ERROR);
+                return false;
+            }
+            if (pending == null || pending.isDone() || !job.ordered)
+                return false;
+
+            waiting.put(job.chatId, backlog != null ? backlog : new ArrayDeque<>());
+            suspended.incrementAndGet();
+            pending.whenComplete((result, e) -> callback(() -> resume(job.chatId)));
+            return true;
+        }
+
+        private void resume(long chatId) {
+            suspended.decrementAndGet();
+            ArrayDeque<Job> backlog = waiting.remove(chatId);
+            Job job;
+            while ((job = backlog.poll()) != null) {
+                parked.decrementAndGet();
+                if (start(job, backlog))
+                    return;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package gruBot.telegram.firestore;
+
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.storage.WarmUp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CacheWarmer implements WarmUp {
+    private final Map<String, CompletableFuture<Integer>> covered = new LinkedHashMap<>();
+
+    private final AtomicInteger totalSnapshots = new AtomicInteger();
+    private final AtomicInteger completedSnapshots = new AtomicInteger();
+    private final AtomicInteger failedSnapshots = new AtomicInteger();
+    private final AtomicLong groupsLoaded = new AtomicLong();
+    private final AtomicLong pollsLoaded = new AtomicLong();
+    private final Object progressLock = new Object();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    public void cover(String collection, CompletableFuture<Integer> initialSnapshot) {
+        covered.put(collection, initialSnapshot);
+    }
+
+    public CompletableFuture<Void> start() {
+        startedAt = System.nanoTime();
+        totalSnapshots.set(covered.size());
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Integer>> listener : covered.entrySet())
+            tasks.add(awaitListener(listener.getKey(), listener.getValue(), "groups".equals(listener.getKey()) ? groupsLoaded : pollsLoaded));
+
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((result, e) -> {
+            finishedAt = System.nanoTime();
+            int failed = failedSnapshots.get();
+            Logger.log("Cache warm-up finished in " + getDurationMillis() + " ms: " + groupsLoaded.get() + " groups, "
+                    + pollsLoaded.get() + " open polls" + (failed > 0 ? ", " + failed + " snapshots failed" : ""),
+                    failed > 0 ? Logger.WARNING : Logger.INFO);
+        });
+    }
+
+    @Override
+    public boolean awaitReady(double fraction, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (progressLock) {
+            while (getProgress() < fraction && !isFinished()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return false;
+                progressLock.wait(remaining);
+            }
+        }
+        return getProgress() >= fraction;
+    }
+
+    public boolean isFinished() {
+        return completedSnapshots.get() + failedSnapshots.get() >= totalSnapshots.get();
+    }
+
+    @Override
+    public double getProgress() {
+        int total = totalSnapshots.get();
+        return total == 0 ? 0 : (double) completedSnapshots.get() / total;
+    }
+
+    public long getGroupsLoaded() {
+        return groupsLoaded.get();
+    }
+
+    public long getPollsLoaded() {
+        return pollsLoaded.get();
+    }
+
+    @Override
+    public long getDurationMillis() {
+        if (startedAt == 0)
+            return 0;
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startedAt);
+    }
+
+    private CompletableFuture<Void> awaitListener(String collection, CompletableFuture<Integer> initialSnapshot, AtomicLong loaded) {
+        return initialSnapshot.handle((documents, e) -> {
+            if (e == null) {
+                loaded.addAndGet(documents);
+                completedSnapshots.incrementAndGet();
+            } else {
+                failedSnapshots.incrementAndGet();
+                Logger.log("Initial snapshot of " + collection + " failed: " + e.getMessage(), Logger.WARNING);
+            }
+            reportProgress();
+            return null;
+        });
+    }
+
+    private void reportProgress() {
+        Logger.log("Cache warm-up " + completedSnapshots.get() + "/" + totalSnapshots.get() + ": " + groupsLoaded.get() + " groups, "
+                + pollsLoaded.get() + " open polls in " + getDurationMillis() + " ms", Logger.INFO);
+        synchronized (progressLock) {
+            progressLock.notifyAll();
+        }
+    }
+}
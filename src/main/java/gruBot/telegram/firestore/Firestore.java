@@ -1,12 +1,23 @@
 package gruBot.telegram.firestore;
 
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.firestore.*;
 import gruBot.telegram.bot.GruBot;
 import gruBot.telegram.bot.GruBotConfig;
-import gruBot.telegram.bot.GruBotPatterns;
+import gruBot.telegram.cache.GroupCache;
+import gruBot.telegram.cache.PollIndex;
 import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Histogram;
+import gruBot.telegram.metrics.Metrics;
+import gruBot.telegram.objects.Command;
 import gruBot.telegram.objects.Group;
+import gruBot.telegram.storage.PollDeadline;
+import gruBot.telegram.storage.PollMessages;
+import gruBot.telegram.storage.Storage;
+import gruBot.telegram.storage.StorageChange;
 import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.api.objects.Message;
 import org.telegram.telegrambots.api.objects.Update;
@@ -15,393 +26,638 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class Firestore implements Storage {
+    private static final Histogram latency = Metrics.histogram("grubot_firestore_duration_seconds", "Latency of Firestore calls", "operation");
+    private static final Counter errors = Metrics.counter("grubot_firestore_errors_total", "Failed Firestore calls", "operation");
 
-public class Firestore {
     private com.google.cloud.firestore.Firestore db;
     private GruBot bot;
+    private GroupCache groupCache;
+    private PollIndex pollIndex;
+    private ListenerRegistration groupsRegistration;
+    private ListenerRegistration pollsRegistration;
+    private final CompletableFuture<Integer> groupsSnapshot = new CompletableFuture<>();
+    private final CompletableFuture<Integer> pollsSnapshot = new CompletableFuture<>();
+    private ScheduledExecutorService scheduler;
+    private WriteBatcher writeBatcher;
 
     public Firestore(GruBot bot) {
-        FirestoreOptions firestoreOptions =
-                FirestoreOptions.getDefaultInstance().toBuilder()
-                        .setProjectId(GruBotConfig.PROJECT_ID)
-                        .build();
-        this.db = firestoreOptions.getService();
+        this(bot, FirestoreOptions.getDefaultInstance().toBuilder()
+                .setProjectId(GruBotConfig.PROJECT_ID)
+                .build()
+                .getService());
+    }
+
+    protected Firestore(GruBot bot, com.google.cloud.firestore.Firestore db) {
+        this.db = db;
         this.bot = bot;
+        this.groupCache = new GroupCache(GruBotConfig.GROUP_CACHE_SIZE, GruBotConfig.GROUP_CACHE_TTL * 1000L);
+        this.pollIndex = new PollIndex();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "firestore-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writeBatcher = new WriteBatcher(db, scheduler, GruBotConfig.WRITE_BATCH_SIZE, GruBotConfig.WRITE_BATCH_WINDOW);
+        if (db == null)
+            return;
+
+        setGroupUpdatesListener();
         setPollUpdatesListener();
+        scheduler.scheduleWithFixedDelay(this::expirePolls, GruBotConfig.POLL_LISTENER_REFRESH, GruBotConfig.POLL_LISTENER_REFRESH, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void applyConfig() {
+        groupCache.setLimits(GruBotConfig.GROUP_CACHE_SIZE, GruBotConfig.GROUP_CACHE_TTL * 1000L);
+        writeBatcher.setLimits(GruBotConfig.WRITE_BATCH_SIZE, GruBotConfig.WRITE_BATCH_WINDOW);
     }
 
-    private void setPollUpdatesListener() {
-        Logger.log("Setting polls update listener...", Logger.INFO);
-        Query pollsQuery = db.collection("votes");
-        pollsQuery.addSnapshotListener((snapshots, error) -> {
+    private synchronized void setGroupUpdatesListener() {
+        Logger.log("Setting groups update listener...", Logger.INFO);
+        Query groupsQuery = db.collection("groups");
+        ListenerRegistration previous = groupsRegistration;
+        groupsRegistration = groupsQuery.addSnapshotListener((snapshots, error) -> {
             if (error == null) {
                 for (DocumentChange dc : snapshots.getDocumentChanges()) {
+                    DocumentSnapshot document = dc.getDocument();
                     switch (dc.getType()) {
                         case ADDED:
-                            break;
                         case MODIFIED:
-                            DocumentSnapshot document = dc.getDocument();
-                            EditMessageText editMessageText = getMessageText(document)
-                                    .setChatId(Long.valueOf(document.get("group").toString()))
-                                    .setMessageId(Integer.valueOf(document.get("messageId").toString()));
-                            bot.updatePoll(editMessageText);
+                            groupCache.put(document);
                             break;
                         case REMOVED:
+                            Object chatId = document.get("chatId");
+                            if (chatId != null)
+                                groupCache.remove(Long.valueOf(chatId.toString()));
                             break;
                         default:
                             break;
                     }
                 }
+                groupsSnapshot.complete(snapshots.size());
+            } else {
+                Logger.log(error.getMessage(), Logger.ERROR);
+                scheduler.schedule(this::setGroupUpdatesListener, GruBotConfig.POLL_LISTENER_RETRY, TimeUnit.SECONDS);
             }
         });
-    }
-
-    public boolean checkGroupExists(long chatId) throws ExecutionException, InterruptedException {
-        Logger.log("Checking group exists in database...", Logger.INFO);
-        Query groupsQuery = db.collection("groups").whereEqualTo("chatId", chatId);
-        ApiFuture<QuerySnapshot> snapshotApiFuture = groupsQuery.get();
 
-        List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-
-        Logger.log("Group exists - " + !documents.isEmpty(), Logger.INFO);
-        return !documents.isEmpty();
+        if (previous != null)
+            previous.remove();
     }
 
-    @SuppressWarnings("unchecked")
-    public void checkUserExistsInGroup(Update update) throws ExecutionException, InterruptedException, NullPointerException {
-        long chatId = update.getMessage().getChatId();
-        long userId = update.getMessage().getFrom().getId();
+    private synchronized void setPollUpdatesListener() {
+        Date cutoff = pollCutoff();
+        Logger.log("Setting polls update listener for polls since " + cutoff + "...", Logger.INFO);
 
-        Logger.log("Checking user group relations...", Logger.INFO);
-        Query groupsQuery = db.collection("groups").whereEqualTo("chatId", chatId);
-        ApiFuture<QuerySnapshot> snapshotApiFuture = groupsQuery.get();
-        List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-        for (DocumentSnapshot document : documents) {
-            Map<String, Boolean> users = (Map<String, Boolean>) document.get("users");
-            Boolean value = users.get(String.valueOf(userId));
+        Query pollsQuery = db.collection("votes").whereGreaterThan("date", cutoff);
+        ListenerRegistration previous = pollsRegistration;
+        pollsRegistration = pollsQuery.addSnapshotListener((snapshots, error) -> {
+            if (error == null) {
+                for (DocumentChange dc : snapshots.getDocumentChanges()) {
+                    DocumentSnapshot document = dc.getDocument();
+                    if (dc.getType() != DocumentChange.Type.REMOVED && isPollExpired(document)) {
+                        removePoll(document);
+                        continue;
+                    }
 
-            if (value == null || (value != null && value == false)) {
-                Logger.log("Adding user to the group", Logger.INFO);
-                addUserToGroup(groupsQuery, userId);
+                    switch (dc.getType()) {
+                        case ADDED:
+                            if (isPollClosed(document))
+                                removePoll(document);
+                            else
+                                indexPoll(document);
+                            break;
+                        case MODIFIED:
+                            if (isPollClosed(document)) {
+                                removePoll(document);
+                                break;
+                            }
+
+                            PollIndex.Entry poll = indexPoll(document);
+                            if (poll == null || poll.isClosed() || !bot.ownsChat(poll.getChatId()))
+                                break;
+
+                            poll.getCountsLoaded().thenRun(() -> bot.updatePoll(getMessageText(poll)
+                                    .setChatId(poll.getChatId())
+                                    .setMessageId(poll.getMessageId())));
+                            break;
+                        case REMOVED:
+                            removePoll(document);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                pollsSnapshot.complete(pollIndex.size());
             } else {
-                Logger.log("User is already in the group", Logger.INFO);
+                Logger.log(error.getMessage(), Logger.ERROR);
+                scheduler.schedule(this::setPollUpdatesListener, GruBotConfig.POLL_LISTENER_RETRY, TimeUnit.SECONDS);
             }
-        }
+        });
+
+        if (previous != null)
+            previous.remove();
     }
 
-    private void addUserToGroup(Query groupsQuery, long userId) throws ExecutionException, InterruptedException, NullPointerException {
-        ApiFuture<QuerySnapshot> snapshotApiFuture = groupsQuery.get();
-        List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-        for (DocumentSnapshot document : documents) {
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("users." + userId, true);
+    @SuppressWarnings("unchecked")
+    private PollIndex.Entry indexPoll(DocumentSnapshot document) {
+        Object chatId = document.get("group");
+        Object messageId = document.get("messageId");
+        if (chatId == null || messageId == null || Integer.valueOf(messageId.toString()) < 0)
+            return null;
+
+        long chat = Long.valueOf(chatId.toString());
+        int message = Integer.valueOf(messageId.toString());
+        PollIndex.Entry poll = pollIndex.update(chat, message, (Map<String, ?>) document.get("users"));
+        if (poll != null)
+            return poll;
+
+        poll = pollIndex.load(chat, message, document.getReference().getPath(), document.getDate("date"), (String) document.get("desc"),
+                (Map<String, String>) document.get("voteOptions"), (Map<String, ?>) document.get("users"),
+                intValue(document.get("userShards")), intValue(document.get("counterShards")), document.getDate("deadline"));
+        loadCounts(poll);
+        return poll;
+    }
 
-            document.getReference().update(updates);
-            Logger.log("Group users updated", Logger.INFO);
-        }
+    private DocumentReference reference(PollIndex.Entry poll) {
+        return db.document(poll.getPath());
     }
 
-    public void createNewGroup(Update update) {
-        Logger.log("Creating new group...", Logger.INFO);
-        Message message = update.getMessage();
-        long chatId = message.getChatId();
-        String chatName = message.getChat().getTitle();
+    private void expirePolls() {
+        for (PollIndex.Entry poll : pollIndex.removeOlderThan(pollCutoff()))
+            bot.getPollEditScheduler().forget(poll.getChatId(), poll.getMessageId());
+    }
 
-        Group group = new Group(chatId, chatName, (new HashMap<>()));
+    private boolean isPollExpired(DocumentSnapshot document) {
+        Date date = document.getDate("date");
+        return date != null && !date.after(pollCutoff());
+    }
 
-        HashMap<String, Object> groupMap = new HashMap<>();
-        groupMap.put("chatId", group.getId());
-        groupMap.put("name", group.getName());
-        groupMap.put("users", group.getUsers());
+    private Date pollCutoff() {
+        return new Date(System.currentTimeMillis() - GruBotConfig.POLL_ACTIVE_DAYS * 24 * 60 * 60 * 1000L);
+    }
 
-        db.collection("groups").add(groupMap);
-        Logger.log("Group created...", Logger.INFO);
+    @Override
+    public CacheWarmer warmUp() {
+        Logger.log("Warming up caches...", Logger.INFO);
+        CacheWarmer warmer = new CacheWarmer();
+        warmer.cover("groups", groupsSnapshot);
+        warmer.cover("votes", pollsSnapshot);
+        warmer.start();
+        return warmer;
     }
 
     @SuppressWarnings("unchecked")
-    public HashMap<String, Object> createNewAnnouncement(Update update) {
-        Logger.log("Creating new announcement...", Logger.INFO);
-        Message message = update.getMessage();
-        long chatId = message.getChatId();
-
-        Logger.log("Matching title to regexp...", Logger.INFO);
-        Matcher m = Pattern.compile(GruBotPatterns.announcementTitle, Pattern.MULTILINE).matcher(message.getText());
-        String announcementTitle = "";
-        if (m.find()) {
-            announcementTitle = m.group(0).replace("!", "");
-            Logger.log("Title match is found", Logger.INFO);
+    private void loadCounts(PollIndex.Entry poll) {
+        if (poll == null || !poll.isSharded())
+            return;
+
+        CompletableFuture<Void> loaded;
+        if (poll.isPartial()) {
+            loaded = toCompletable(track("loadCounters", reference(poll).collection("counters").get()))
+                    .thenAccept(counters -> poll.addCounts(ShardedActions.sumCounters(counters.getDocuments())));
         } else {
-            Logger.log("Title match is not found", Logger.WARNING);
+            loaded = toCompletable(track("loadUserShards", reference(poll).collection("users").get())).thenAccept(shards -> {
+                for (DocumentSnapshot shard : shards.getDocuments())
+                    poll.setUsers((Map<String, ?>) shard.get("users"));
+            });
         }
+        poll.setCountsLoaded(loaded.exceptionally(e -> {
+            Logger.log("Failed to load counts of poll " + poll.getMessageId() + ": " + e.getMessage(), Logger.ERROR);
+            return null;
+        }));
+    }
 
-        Logger.log("Matching text to regexp...", Logger.INFO);
-        m = Pattern.compile(GruBotPatterns.announcementText, Pattern.MULTILINE).matcher(message.getText());
-        String announcementText = "";
-        if (m.find()) {
-            announcementText = m.group(0);
-            Logger.log("Text match is found", Logger.INFO);
-        } else {
-            Logger.log("Text match is not found", Logger.WARNING);
-        }
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Void> loadUserShard(PollIndex.Entry poll, int shard) {
+        if (!poll.isPartial())
+            return CompletableFuture.completedFuture(null);
 
-        Logger.log("Matching finished", Logger.INFO);
-        Logger.log("Getting group users...", Logger.INFO);
+        DocumentReference shardReference = reference(poll).collection("users").document(String.valueOf(shard));
+        return poll.loadShard(shard, () -> toCompletable(track("loadUserShard", shardReference.get()))
+                .thenAccept(snapshot -> poll.addUsers((Map<String, ?>) snapshot.get("users"))));
+    }
 
-        Map<String, Boolean> groupUsers = new HashMap<>();
-        try {
-            Query groupsQuery = db.collection("groups").whereEqualTo("chatId", chatId);
-            ApiFuture<QuerySnapshot> snapshotApiFuture = groupsQuery.get();
+    private CompletableFuture<Void> loadAllUserShards(PollIndex.Entry poll) {
+        if (!poll.isPartial())
+            return CompletableFuture.completedFuture(null);
 
-            List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-            for (DocumentSnapshot document : documents) {
-                groupUsers = (Map<String, Boolean>) document.get("users");
-            }
+        CompletableFuture<?>[] shards = new CompletableFuture<?>[poll.getUserShards()];
+        for (int i = 0; i < shards.length; i++)
+            shards[i] = loadUserShard(poll, i);
+        return CompletableFuture.allOf(shards);
+    }
 
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
+    private boolean isPollClosed(DocumentSnapshot document) {
+        return Boolean.TRUE.equals(document.getBoolean("closed"));
+    }
+
+    private void removePoll(DocumentSnapshot document) {
+        Object chatId = document.get("group");
+        Object messageId = document.get("messageId");
+        if (chatId == null || messageId == null)
+            return;
+
+        long chat = Long.valueOf(chatId.toString());
+        int message = Integer.valueOf(messageId.toString());
+        PollIndex.Entry removed = isPollClosed(document) ? pollIndex.close(chat, message) : pollIndex.remove(chat, message);
+        if (removed != null)
+            bot.getPollEditScheduler().forget(chat, message);
+    }
+
+    private <T> T await(String operation, ApiFuture<T> future) throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            errors.increment(operation);
+            throw e;
+        } finally {
+            latency.observeSince(operation, start);
         }
+    }
 
-        Logger.log("Creating announcement...", Logger.INFO);
-        HashMap<String, Object> announcement = new HashMap<>();
-        announcement.put("group", message.getChatId());
-        announcement.put("groupName", message.getChat().getTitle());
-        announcement.put("messageId", -1);
-        announcement.put("author", message.getFrom().getId());
-        announcement.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
-        announcement.put("desc", announcementTitle);
-        announcement.put("date", new Date());
-        announcement.put("type", "TELEGRAM");
-        announcement.put("text", announcementText);
-        HashMap<String, String> users = new HashMap<>();
-        for (Map.Entry<String, Boolean> user : groupUsers.entrySet())
-            users.put(user.getKey(), "new");
-        announcement.put("users", users);
+    private <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
 
-        ApiFuture<DocumentReference> reference = db.collection("announcements").add(announcement);
-        announcement.put("reference", reference);
-        Logger.log("Announcement created", Logger.INFO);
-        return announcement;
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+        });
+        return result;
     }
 
-    @SuppressWarnings("unchecked")
-    public HashMap<String, Object> createNewArticle(Update update) {
-        Logger.log("Creating new article...", Logger.INFO);
-        Message message = update.getMessage();
-        long chatId = message.getChatId();
+    private <T> ApiFuture<T> track(String operation, ApiFuture<T> future) {
+        long start = System.nanoTime();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                errors.increment(operation);
+                latency.observeSince(operation, start);
+                Logger.log(t.getMessage(), Logger.ERROR);
+            }
 
-        Logger.log("Matching title to regexp...", Logger.INFO);
-        Matcher m = Pattern.compile(GruBotPatterns.articleTitle, Pattern.MULTILINE).matcher(message.getText());
-        String announcementTitle = "";
-        if (m.find()) {
-            announcementTitle = m.group(0).replace("*", "");
-            Logger.log("Title match is found", Logger.INFO);
-        } else {
-            Logger.log("Title match is not found", Logger.WARNING);
-        }
+            @Override
+            public void onSuccess(T result) {
+                latency.observeSince(operation, start);
+            }
+        });
+        return future;
+    }
 
-        Logger.log("Matching text to regexp...", Logger.INFO);
-        m = Pattern.compile(GruBotPatterns.articleText, Pattern.MULTILINE).matcher(message.getText());
-        String announcementText = "";
-        if (m.find()) {
-            announcementText = m.group(0);
-            Logger.log("Text match is found", Logger.INFO);
-        } else {
-            Logger.log("Text match is not found", Logger.WARNING);
-        }
+    private CompletableFuture<GroupCache.Entry> getGroup(long chatId) {
+        GroupCache.Entry group = groupCache.get(chatId);
+        if (group != null)
+            return CompletableFuture.completedFuture(group);
 
-        Logger.log("Matching finished", Logger.INFO);
+        Logger.log("Loading group from database...", Logger.INFO);
+        Query groupsQuery = db.collection("groups").whereEqualTo("chatId", chatId);
+        return toCompletable(track("getGroup", groupsQuery.get())).thenApply(snapshot -> {
+            GroupCache.Entry loaded = null;
+            for (DocumentSnapshot document : snapshot.getDocuments())
+                loaded = groupCache.put(document);
+            return loaded;
+        });
+    }
+
+    private CompletableFuture<Map<String, Boolean>> getGroupUsers(long chatId) {
         Logger.log("Getting group users...", Logger.INFO);
+        return getGroup(chatId).<Map<String, Boolean>>thenApply(group -> group != null ? group.getUsers() : new HashMap<>()).exceptionally(e -> {
+            Logger.log(e.getMessage(), Logger.ERROR);
+            return new HashMap<>();
+        });
+    }
 
-        Map<String, Boolean> groupUsers = new HashMap<>();
-        try {
-            Query groupsQuery = db.collection("groups").whereEqualTo("chatId", chatId);
-            ApiFuture<QuerySnapshot> snapshotApiFuture = groupsQuery.get();
+    @Override
+    public CompletableFuture<Boolean> checkGroupExists(long chatId) {
+        return getGroup(chatId).thenApply(group -> {
+            boolean exists = group != null;
+            Logger.log("Group exists - " + exists, Logger.INFO);
+            return exists;
+        });
+    }
 
-            List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-            for (DocumentSnapshot document : documents) {
-                groupUsers = (Map<String, Boolean>) document.get("users");
+    @Override
+    public CompletableFuture<Void> checkUserExistsInGroup(Update update) {
+        long chatId = update.getMessage().getChatId();
+        long userId = update.getMessage().getFrom().getId();
+
+        return getGroup(chatId).thenAccept(group -> {
+            if (group != null && !group.hasUser(userId)) {
+                Logger.log("Adding user to the group", Logger.INFO);
+                addUserToGroup(group, userId);
             }
+        });
+    }
 
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
-        }
+    private void addUserToGroup(GroupCache.Entry group, long userId) {
+        if (!group.addUser(userId))
+            return;
 
-        Logger.log("Creating article...", Logger.INFO);
-        HashMap<String, Object> article = new HashMap<>();
-        article.put("group", message.getChatId());
-        article.put("groupName", message.getChat().getTitle());
-        article.put("messageId", -1);
-        article.put("author", message.getFrom().getId());
-        article.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
-        article.put("desc", announcementTitle);
-        article.put("date", new Date());
-        article.put("type", "TELEGRAM");
-        article.put("text", announcementText);
-        HashMap<String, String> users = new HashMap<>();
-        for (Map.Entry<String, Boolean> user : groupUsers.entrySet())
-            users.put(user.getKey(), "new");
-        article.put("users", users);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("users." + userId, true);
 
-        ApiFuture<DocumentReference> reference = db.collection("articles").add(article);
-        article.put("reference", reference);
-        Logger.log("Article created", Logger.INFO);
-        return article;
+        group.getCreated().thenCompose(created -> writeBatcher.update(group.getReference(), updates)).whenComplete((result, e) -> {
+            if (e != null) {
+                group.removeUser(userId);
+                Logger.log("Failed to add user " + userId + " to the group: " + e.getMessage(), Logger.ERROR);
+            }
+        });
+        Logger.log("Group users updated", Logger.INFO);
     }
 
-    @SuppressWarnings("unchecked")
-    public HashMap<String, Object> createNewPoll(Update update) {
-        Logger.log("Creating new poll...", Logger.INFO);
+    @Override
+    public CompletableFuture<Void> createNewGroup(Update update) {
+        Logger.log("Creating new group...", Logger.INFO);
         Message message = update.getMessage();
         long chatId = message.getChatId();
+        String chatName = message.getChat().getTitle();
 
-        Logger.log("Matching title to regexp...", Logger.INFO);
-        Matcher m = Pattern.compile(GruBotPatterns.voteTitle, Pattern.MULTILINE).matcher(message.getText());
-        String voteTitle = "";
-        if(m.find()) {
-            voteTitle = m.group(0).replace("?", "").replaceAll("\r", "");
-            Logger.log("Title match is found", Logger.INFO);
-        } else {
-            Logger.log("Title match is not found", Logger.WARNING);
-        }
+        Group group = new Group(chatId, chatName, (new HashMap<>()));
 
-        Logger.log("Matching text to regexp...", Logger.INFO);
-        m = Pattern.compile(GruBotPatterns.voteText, Pattern.MULTILINE).matcher(message.getText());
+        HashMap<String, Object> groupMap = new HashMap<>();
+        groupMap.put("chatId", group.getId());
+        groupMap.put("name", group.getName());
+        groupMap.put("users", group.getUsers());
 
-        HashMap<String, String> voteOptions = new HashMap<>();
-        int i = 0;
-        while (m.find()) {
-            voteOptions.put(String.valueOf(i + 1), m.group().replaceFirst(GruBotPatterns.voteOptionTextOnly, "").replaceAll("\r", "").replaceAll("\n", ""));
-            i++;
-            Logger.log("Text match is found", Logger.INFO);
-        }
-        if (i == 0)
-            Logger.log("Text match is not found", Logger.WARNING);
+        DocumentReference reference = db.collection("groups").document();
+        GroupCache.Entry entry = groupCache.put(chatId, reference, group.getUsers());
+        entry.setCreated(toCompletable(track("createNewGroup", reference.set(groupMap))).whenComplete((result, e) -> {
+            if (e != null)
+                groupCache.remove(chatId, entry);
+        }).thenApply(result -> null));
+        Logger.log("Group created...", Logger.INFO);
+        return CompletableFuture.completedFuture(null);
+    }
 
-        Logger.log("Matching finished", Logger.INFO);
-        Logger.log("Getting group users...", Logger.INFO);
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewAnnouncement(Update update, Command command) {
+        Logger.log("Creating new announcement...", Logger.INFO);
+        Message message = update.getMessage();
 
-        Map<String, Boolean> groupUsers = new HashMap<>();
-        try {
-            Query groupsQuery = db.collection("groups").whereEqualTo("chatId", chatId);
-            ApiFuture<QuerySnapshot> snapshotApiFuture = groupsQuery.get();
+        String announcementTitle = command.getTitle();
+        String announcementText = command.getText();
+
+        return getGroupUsers(message.getChatId()).thenApply(groupUsers -> {
+            Logger.log("Creating announcement...", Logger.INFO);
+            HashMap<String, Object> announcement = new HashMap<>();
+            announcement.put("group", message.getChatId());
+            announcement.put("groupName", message.getChat().getTitle());
+            announcement.put("messageId", -1);
+            announcement.put("author", message.getFrom().getId());
+            announcement.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
+            announcement.put("desc", announcementTitle);
+            announcement.put("date", new Date());
+            announcement.put("type", "TELEGRAM");
+            announcement.put("text", announcementText);
+            storeAction("createNewAnnouncement", "announcements", announcement, groupUsers);
+            Logger.log("Announcement created", Logger.INFO);
+            return announcement;
+        });
+    }
 
-            List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-            for (DocumentSnapshot document : documents) {
-                groupUsers = (Map<String, Boolean>) document.get("users");
-            }
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewArticle(Update update, Command command) {
+        Logger.log("Creating new article...", Logger.INFO);
+        Message message = update.getMessage();
 
-        } catch (Exception e) {
-            Logger.log(e.getMessage(), Logger.ERROR);
-        }
+        String announcementTitle = command.getTitle();
+        String announcementText = command.getText();
+
+        return getGroupUsers(message.getChatId()).thenApply(groupUsers -> {
+            Logger.log("Creating article...", Logger.INFO);
+            HashMap<String, Object> article = new HashMap<>();
+            article.put("group", message.getChatId());
+            article.put("groupName", message.getChat().getTitle());
+            article.put("messageId", -1);
+            article.put("author", message.getFrom().getId());
+            article.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
+            article.put("desc", announcementTitle);
+            article.put("date", new Date());
+            article.put("type", "TELEGRAM");
+            article.put("text", announcementText);
+            storeAction("createNewArticle", "articles", article, groupUsers);
+            Logger.log("Article created", Logger.INFO);
+            return article;
+        });
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewPoll(Update update, Command command) {
+        Logger.log("Creating new poll...", Logger.INFO);
+        Message message = update.getMessage();
+
+        String voteTitle = command.getTitle();
+        HashMap<String, String> voteOptions = command.getOptions();
+
+        return getGroupUsers(message.getChatId()).thenApply(groupUsers -> {
+            Logger.log("Creating poll...", Logger.INFO);
+            HashMap<String, Object> vote = new HashMap<>();
+            vote.put("group", message.getChatId());
+            vote.put("messageId", -1);
+            vote.put("groupName", message.getChat().getTitle());
+            vote.put("author", message.getFrom().getId());
+            vote.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
+            vote.put("desc", voteTitle);
+            vote.put("date", new Date());
+            vote.put("type", "TELEGRAM");
+            vote.put("voteOptions", voteOptions);
+            PollDeadline.put(vote, command);
+            storeAction("createNewPoll", "votes", vote, groupUsers);
+            Logger.log("Poll created", Logger.INFO);
+            return vote;
+        });
+    }
 
-        Logger.log("Creating poll...", Logger.INFO);
-        HashMap<String, Object> vote = new HashMap<>();
-        vote.put("group", message.getChatId());
-        vote.put("messageId", -1);
-        vote.put("groupName", message.getChat().getTitle());
-        vote.put("author", message.getFrom().getId());
-        vote.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
-        vote.put("desc", voteTitle);
-        vote.put("date", new Date());
-        vote.put("type", "TELEGRAM");
-        vote.put("voteOptions", voteOptions);
+    @SuppressWarnings("unchecked")
+    private void storeAction(String operation, String collection, HashMap<String, Object> action, Map<String, Boolean> groupUsers) {
         HashMap<String, String> users = new HashMap<>();
         for (Map.Entry<String, Boolean> user : groupUsers.entrySet())
             users.put(user.getKey(), "new");
-        vote.put("users", users);
-
-        ApiFuture<DocumentReference> reference = db.collection("votes").add(vote);
-        vote.put("reference", reference);
-        Logger.log("Poll created", Logger.INFO);
-        return vote;
-    }
 
-    public void setMessageIdToAction(int messageId, ApiFuture<DocumentReference> referenceApiFuture) throws ExecutionException, InterruptedException, NullPointerException {
-        DocumentReference document = referenceApiFuture.get();
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("messageId", messageId);
+        if (!ShardedActions.isSharded(users.size())) {
+            action.put("users", users);
+            action.put("reference", toCompletable(track(operation, db.collection(collection).add(action))));
+            return;
+        }
 
-        document.update(updates);
+        Logger.log("Storing action for " + users.size() + " users in sharded layout", Logger.INFO);
+        int userShards = ShardedActions.userShardCount(users.size());
+        int counterShards = ShardedActions.counterShardCount();
+        action.put("userShards", userShards);
+        action.put("counterShards", counterShards);
+        action.put("usersCount", users.size());
+
+        DocumentReference reference = db.collection(collection).document();
+        Map<String, String> voteOptions = (Map<String, String>) action.get("voteOptions");
+        WriteBatch batch = ShardedActions.create(db.batch(), reference, new HashMap<>(action), users, userShards, counterShards,
+                voteOptions != null ? voteOptions.keySet() : null);
+        action.put("users", users);
+        action.put("reference", toCompletable(track(operation, batch.commit())).thenApply(result -> reference));
     }
 
+    @Override
     @SuppressWarnings("unchecked")
-    public EditMessageText updatePollAnswer(int userId, int pollOptionNumber, int pollMessageId) throws ExecutionException, InterruptedException, NullPointerException {
-        EditMessageText editMessageText = null;
-
-        Query pollQuery = db.collection("votes").whereEqualTo("messageId", pollMessageId);
-        ApiFuture<QuerySnapshot> snapshotApiFuture = pollQuery.get();
-        List<QueryDocumentSnapshot> documents = snapshotApiFuture.get().getDocuments();
-        for (DocumentSnapshot document : documents) {
+    public CompletableFuture<Void> setMessageIdToAction(int messageId, HashMap<String, Object> action) {
+        return ((CompletableFuture<DocumentReference>) action.get("reference")).thenCompose(document -> {
             Map<String, Object> updates = new HashMap<>();
-            updates.put("users." + userId, pollOptionNumber);
+            updates.put("messageId", messageId);
 
-            document.getReference().update(updates);
-        }
+            if (action.containsKey("voteOptions"))
+                pollIndex.put((long) action.get("group"), messageId, document.getPath(), (Date) action.get("date"), (String) action.get("desc"),
+                        (Map<String, String>) action.get("voteOptions"), (Map<String, String>) action.get("users"),
+                        intValue(action.get("userShards")), intValue(action.get("counterShards")), (Date) action.get("deadline"));
 
-        pollQuery = db.collection("votes").whereEqualTo("messageId", pollMessageId);
-        snapshotApiFuture = pollQuery.get();
-        documents = snapshotApiFuture.get().getDocuments();
-        for (DocumentSnapshot document : documents) {
-            String newMessageText = "";
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("users." + userId, pollOptionNumber);
+            return writeBatcher.update(document, updates);
+        });
+    }
 
-            document.getReference().update(updates);
+    private static int intValue(Object value) {
+        return value != null ? Integer.valueOf(value.toString()) : 0;
+    }
 
-            editMessageText = getMessageText(document);
-        }
+    @Override
+    public CompletableFuture<PollIndex.Entry> getPoll(long chatId, int messageId) {
+        return findPoll(chatId, messageId).thenCompose(poll -> poll != null
+                ? loadAllUserShards(poll).thenApply(loaded -> poll)
+                : CompletableFuture.completedFuture(null));
+    }
 
+    private CompletableFuture<PollIndex.Entry> findPoll(long chatId, int messageId) {
+        PollIndex.Entry cached = pollIndex.get(chatId, messageId);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+
+        Logger.log("Loading poll from database...", Logger.INFO);
+        Query pollQuery = db.collection("votes").whereEqualTo("messageId", messageId);
+        return toCompletable(track("getPoll", pollQuery.get())).thenCompose(snapshot -> {
+            PollIndex.Entry poll = null;
+            for (DocumentSnapshot document : snapshot.getDocuments())
+                if (String.valueOf(chatId).equals(String.valueOf(document.get("group"))) && !isPollClosed(document))
+                    poll = indexPoll(document);
+
+            if (poll == null)
+                return CompletableFuture.completedFuture(null);
+            PollIndex.Entry loaded = poll;
+            return poll.getCountsLoaded().thenApply(result -> loaded);
+        });
+    }
 
-        return editMessageText;
+    @Override
+    public CompletableFuture<EditMessageText> updatePollAnswer(int userId, int pollOptionNumber, long chatId, int pollMessageId) {
+        return findPoll(chatId, pollMessageId).thenCompose(poll -> {
+            if (poll == null)
+                return CompletableFuture.completedFuture(null);
+            return poll.getCountsLoaded()
+                    .thenCompose(loaded -> poll.isPartial()
+                            ? loadUserShard(poll, ShardedActions.shardOf(String.valueOf(userId), poll.getUserShards()))
+                            : CompletableFuture.<Void>completedFuture(null))
+                    .thenApply(loaded -> vote(poll, userId, pollOptionNumber));
+        });
     }
 
-    @SuppressWarnings("unchecked")
-    private EditMessageText getMessageText(DocumentSnapshot document) {
-        String title = (String) document.get("desc");
-        HashMap<String, String> voteOptions = (HashMap<String, String>) document.get("voteOptions");
-        HashMap<String, String> users = (HashMap<String, String>) document.get("users");
+    private EditMessageText vote(PollIndex.Entry poll, int userId, int pollOptionNumber) {
+        String previous = poll.vote(userId, pollOptionNumber);
+        if (poll.isClosed())
+            return null;
 
-        String newMessageText = title;
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("users." + userId, pollOptionNumber);
+        CompletableFuture<Void> written = null;
+        if (!poll.isSharded()) {
+            written = writeBatcher.update(reference(poll), updates);
+        } else if (!String.valueOf(pollOptionNumber).equals(previous)) {
+            written = writeBatcher.update(ShardedActions.userShard(reference(poll), String.valueOf(userId), poll.getUserShards()), updates);
+            if (poll.getCounterShards() > 0)
+                written.thenRun(() -> track("updatePollCounters",
+                        ShardedActions.moveCount(db, reference(poll), poll.getCounterShards(), previous, String.valueOf(pollOptionNumber))));
+        }
+        if (written != null)
+            written.whenComplete((result, e) -> {
+                if (e != null) {
+                    poll.revertVote(userId, pollOptionNumber, previous);
+                    Logger.log("Failed to store vote of user " + userId + " in poll " + poll.getMessageId() + ": " + e.getMessage(), Logger.ERROR);
+                }
+            });
 
-        HashMap<String, Integer> voteCounts = new HashMap<>();
+        return getMessageText(poll);
+    }
 
-        for (Map.Entry<String, String> entry : users.entrySet()) {
-            Integer currentValue = voteCounts.get(String.valueOf(entry.getValue()));
-            if (currentValue == null)
-                currentValue = 0;
+    @Override
+    public CompletableFuture<PollIndex.Entry> closePoll(long chatId, int pollMessageId) {
+        return findPoll(chatId, pollMessageId).thenCompose(poll -> {
+            if (poll == null || poll.isClosed())
+                return CompletableFuture.completedFuture(null);
+
+            Map<String, Object> updates = PollDeadline.closedFields(poll);
+            return toCompletable(track("closePoll", db.runTransaction(transaction -> {
+                if (isPollClosed(transaction.get(reference(poll)).get()))
+                    return false;
+                transaction.update(reference(poll), updates);
+                return true;
+            }))).thenApply(stored -> {
+                boolean closed = poll.close() && stored;
+                if (pollIndex.close(chatId, pollMessageId) != null)
+                    bot.getPollEditScheduler().forget(chatId, pollMessageId);
+                return closed ? poll : null;
+            });
+        });
+    }
 
-            voteCounts.put(String.valueOf(entry.getValue()), currentValue + 1);
+    @Override
+    public void loadPollDeadlines(Consumer<PollDeadline> consumer) throws ExecutionException, InterruptedException {
+        Query query = db.collection("votes")
+                .whereGreaterThan("deadline", pollCutoff())
+                .orderBy("deadline")
+                .select("group", "messageId", "deadline", "reminders", "closed");
+
+        DocumentSnapshot last = null;
+        while (true) {
+            Query page = last == null ? query.limit(GruBotConfig.POLL_DEADLINE_PAGE_SIZE) : query.startAfter(last).limit(GruBotConfig.POLL_DEADLINE_PAGE_SIZE);
+            List<QueryDocumentSnapshot> documents = await("loadPollDeadlines", page.get()).getDocuments();
+            for (DocumentSnapshot document : documents) {
+                PollDeadline deadline = PollDeadline.from(document.getData());
+                if (deadline != null)
+                    consumer.accept(deadline);
+            }
+            if (documents.size() < GruBotConfig.POLL_DEADLINE_PAGE_SIZE)
+                return;
+            last = documents.get(documents.size() - 1);
         }
+    }
 
-        StringBuilder builder = new StringBuilder(newMessageText);
-        for (Map.Entry<String, String> entry : voteOptions.entrySet()) {
-            Integer value = voteCounts.get(entry.getKey().trim());
-            if (value == null)
-                value = 0;
-
-            builder.append("\r\n")
-                    .append(entry.getKey())
-                    .append(". ")
-                    .append(entry.getValue())
-                    .append(" [")
-                    .append(value)
-                    .append("]");
-        }
-        Integer value = voteCounts.get("new");
-        if (value == null)
-            value = 0;
-        builder.append("\r\n\r\n")
-                .append("Не проголосовало [")
-                .append(value)
-                .append("]");
-
-        newMessageText = builder.toString();
-
-        return new EditMessageText()
-                .setText(newMessageText)
-                .setReplyMarkup(bot.getVoteKeyboard(voteOptions));
+    @Override
+    public EditMessageText getMessageText(PollIndex.Entry poll) {
+        return PollMessages.render(bot, poll);
+    }
+
+    @Override
+    public void addChangeListener(String collection, ChangeListener listener) {
+        db.collection(collection).addSnapshotListener((snapshots, error) -> {
+            if (error != null) {
+                Logger.log(error.getMessage(), Logger.ERROR);
+                scheduler.schedule(() -> addChangeListener(collection, listener), GruBotConfig.POLL_LISTENER_RETRY, TimeUnit.SECONDS);
+                return;
+            }
+
+            for (DocumentChange dc : snapshots.getDocumentChanges()) {
+                DocumentSnapshot document = dc.getDocument();
+                listener.onChange(new StorageChange(StorageChange.Type.valueOf(dc.getType().name()), collection, document.getId(), document.getData()));
+            }
+        });
     }
 }
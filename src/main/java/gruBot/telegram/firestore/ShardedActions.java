@@ -0,0 +1,103 @@
+package gruBot.telegram.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import gruBot.telegram.bot.GruBotConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ShardedActions {
+    private static final int MAX_USER_SHARDS = 400;
+    private static final int MAX_COUNTER_SHARDS = 50;
+
+    public static boolean isSharded(int users) {
+        return GruBotConfig.SHARDED_ACTION_THRESHOLD > 0 && users >= GruBotConfig.SHARDED_ACTION_THRESHOLD;
+    }
+
+    public static int userShardCount(int users) {
+        int perShard = Math.max(1, GruBotConfig.SHARDED_ACTION_USERS_PER_SHARD);
+        return Math.max(1, Math.min(MAX_USER_SHARDS, (users + perShard - 1) / perShard));
+    }
+
+    public static int counterShardCount() {
+        return Math.max(1, Math.min(MAX_COUNTER_SHARDS, GruBotConfig.SHARDED_ACTION_COUNTERS));
+    }
+
+    public static int shardOf(String userId, int shards) {
+        return Math.floorMod(userId.hashCode(), shards);
+    }
+
+    public static DocumentReference userShard(DocumentReference action, String userId, int shards) {
+        return action.collection("users").document(String.valueOf(shardOf(userId, shards)));
+    }
+
+    public static WriteBatch create(WriteBatch batch, DocumentReference action, Map<String, Object> document,
+                                    Map<String, String> users, int userShards, int counterShards, Collection<String> options) {
+        batch.set(action, document);
+
+        List<Map<String, Object>> shards = new ArrayList<>(userShards);
+        for (int i = 0; i < userShards; i++)
+            shards.add(new HashMap<>());
+        for (Map.Entry<String, String> user : users.entrySet())
+            shards.get(shardOf(user.getKey(), userShards)).put(user.getKey(), user.getValue());
+
+        for (int i = 0; i < userShards; i++) {
+            Map<String, Object> shard = new HashMap<>();
+            shard.put("users", shards.get(i));
+            batch.set(action.collection("users").document(String.valueOf(i)), shard);
+        }
+
+        for (int i = 0; i < counterShards; i++) {
+            Map<String, Object> counter = new HashMap<>();
+            counter.put("new", i == 0 ? users.size() : 0);
+            if (options != null)
+                for (String option : options)
+                    counter.put(option.trim(), 0);
+            batch.set(action.collection("counters").document(String.valueOf(i)), counter);
+        }
+        return batch;
+    }
+
+    public static ApiFuture<Void> moveCount(com.google.cloud.firestore.Firestore db, DocumentReference action, int counterShards,
+                                            String from, String to) {
+        DocumentReference counter = action.collection("counters").document(String.valueOf(ThreadLocalRandom.current().nextInt(counterShards)));
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(counter).get();
+            Map<String, Object> updates = new HashMap<>();
+            if (from != null)
+                updates.put(from, count(snapshot, from) - 1);
+            updates.put(to, count(snapshot, to) + 1);
+            transaction.set(counter, updates, SetOptions.merge());
+            return null;
+        });
+    }
+
+    public static Map<String, Long> sumCounters(List<? extends DocumentSnapshot> counters) {
+        Map<String, Long> totals = new HashMap<>();
+        for (DocumentSnapshot counter : counters) {
+            Map<String, Object> data = counter.getData();
+            if (data == null)
+                continue;
+            for (Map.Entry<String, Object> field : data.entrySet())
+                if (field.getValue() instanceof Number)
+                    totals.merge(field.getKey(), ((Number) field.getValue()).longValue(), Long::sum);
+        }
+        return totals;
+    }
+
+    private static long count(DocumentSnapshot snapshot, String field) {
+        if (!snapshot.exists())
+            return 0;
+
+        Long value = snapshot.getLong(field);
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,236 @@
+package gruBot.telegram.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.WriteBatch;
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Histogram;
+import gruBot.telegram.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBatcher {
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static final Histogram latency = Metrics.histogram("grubot_firestore_duration_seconds", "Latency of Firestore calls", "operation");
+    private static final Counter errors = Metrics.counter("grubot_firestore_errors_total", "Failed Firestore calls", "operation");
+    private static final Counter writes = Metrics.counter("grubot_firestore_batched_writes_total", "Field updates passed through the write batcher", "result");
+
+    private final Committer committer;
+    private final ScheduledExecutorService scheduler;
+    private int batchSize;
+    private long windowMillis;
+
+    private LinkedHashMap<DocumentReference, PendingWrite> pending = new LinkedHashMap<>();
+    private final HashSet<DocumentReference> inFlight = new HashSet<>();
+    private int pendingFields;
+    private ScheduledFuture<?> scheduledFlush;
+
+    public WriteBatcher(com.google.cloud.firestore.Firestore db, ScheduledExecutorService scheduler, int batchSize, long windowMillis) {
+        this(new Committer() {
+            @Override
+            public CompletableFuture<?> commit(Map<DocumentReference, Map<String, Object>> documents) {
+                WriteBatch batch = db.batch();
+                for (Map.Entry<DocumentReference, Map<String, Object>> document : documents.entrySet())
+                    batch.update(document.getKey(), document.getValue());
+                return toCompletable(batch.commit());
+            }
+
+            @Override
+            public CompletableFuture<?> update(DocumentReference reference, Map<String, Object> fields) {
+                return toCompletable(reference.update(fields));
+            }
+        }, scheduler, batchSize, windowMillis);
+    }
+
+    public WriteBatcher(Committer committer, ScheduledExecutorService scheduler, int batchSize, long windowMillis) {
+        this.committer = committer;
+        this.scheduler = scheduler;
+        this.batchSize = Math.min(batchSize, MAX_BATCH_SIZE);
+        this.windowMillis = windowMillis;
+    }
+
+    public synchronized void setLimits(int batchSize, long windowMillis) {
+        this.batchSize = Math.min(batchSize, MAX_BATCH_SIZE);
+        this.windowMillis = windowMillis;
+    }
+
+    public CompletableFuture<Void> update(DocumentReference reference, Map<String, Object> updates) {
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        boolean flushNow;
+        synchronized (this) {
+            PendingWrite write = pending.computeIfAbsent(reference, key -> new PendingWrite());
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                if (write.fields.put(update.getKey(), update.getValue()) == null) {
+                    pendingFields++;
+                    writes.increment("queued");
+                } else {
+                    writes.increment("merged");
+                }
+            }
+            write.waiters.add(waiter);
+
+            flushNow = pending.size() >= batchSize;
+            if (!flushNow && scheduledFlush == null)
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+
+        if (flushNow)
+            flush();
+        return waiter;
+    }
+
+    public synchronized int getPending() {
+        return pendingFields;
+    }
+
+    public void flush() {
+        LinkedHashMap<DocumentReference, PendingWrite> documents = new LinkedHashMap<>();
+        int fields = 0;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+
+            Iterator<Map.Entry<DocumentReference, PendingWrite>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && documents.size() < MAX_BATCH_SIZE) {
+                Map.Entry<DocumentReference, PendingWrite> document = iterator.next();
+                if (!inFlight.add(document.getKey()))
+                    continue;
+
+                documents.put(document.getKey(), document.getValue());
+                fields += document.getValue().fields.size();
+                iterator.remove();
+            }
+            pendingFields -= fields;
+            if (documents.size() == MAX_BATCH_SIZE && !pending.isEmpty())
+                scheduleFlush();
+            if (documents.isEmpty())
+                return;
+        }
+
+        Map<DocumentReference, Map<String, Object>> batch = new LinkedHashMap<>();
+        for (Map.Entry<DocumentReference, PendingWrite> document : documents.entrySet())
+            batch.put(document.getKey(), new LinkedHashMap<>(document.getValue().fields));
+
+        long start = System.nanoTime();
+        int committed = fields;
+        commit(() -> committer.commit(batch)).whenComplete((result, t) -> {
+            latency.observeSince("batchCommit", start);
+            if (t == null) {
+                writes.add("committed", committed);
+                for (Map.Entry<DocumentReference, PendingWrite> document : documents.entrySet()) {
+                    document.getValue().complete();
+                    release(document.getKey());
+                }
+                return;
+            }
+
+            errors.increment("batchCommit");
+            if (documents.size() == 1) {
+                Map.Entry<DocumentReference, PendingWrite> document = documents.entrySet().iterator().next();
+                Logger.log("Update of " + document.getKey().getPath() + " failed: " + t.getMessage(), Logger.ERROR);
+                writes.add("failed", document.getValue().fields.size());
+                document.getValue().fail(t);
+                release(document.getKey());
+                return;
+            }
+
+            Logger.log("Batch of " + documents.size() + " documents failed, retrying them one by one: " + t.getMessage(), Logger.WARNING);
+            for (Map.Entry<DocumentReference, PendingWrite> document : documents.entrySet())
+                retry(document.getKey(), document.getValue());
+        });
+    }
+
+    private void retry(DocumentReference reference, PendingWrite write) {
+        long start = System.nanoTime();
+        commit(() -> committer.update(reference, new LinkedHashMap<>(write.fields))).whenComplete((result, t) -> {
+            latency.observeSince("retryUpdate", start);
+            if (t == null) {
+                writes.add("retried", write.fields.size());
+                write.complete();
+            } else {
+                errors.increment("retryUpdate");
+                Logger.log("Update of " + reference.getPath() + " failed: " + t.getMessage(), Logger.ERROR);
+                writes.add("failed", write.fields.size());
+                write.fail(t);
+            }
+            release(reference);
+        });
+    }
+
+    private synchronized void release(DocumentReference reference) {
+        inFlight.remove(reference);
+        if (pending.containsKey(reference))
+            scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush == null)
+            scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static CompletableFuture<?> commit(CommitCall call) {
+        try {
+            return call.run();
+        } catch (RuntimeException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    public interface Committer {
+        CompletableFuture<?> commit(Map<DocumentReference, Map<String, Object>> documents);
+
+        CompletableFuture<?> update(DocumentReference reference, Map<String, Object> fields);
+    }
+
+    private interface CommitCall {
+        CompletableFuture<?> run();
+    }
+
+    private static class PendingWrite {
+        private final LinkedHashMap<String, Object> fields = new LinkedHashMap<>();
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+
+        private void complete() {
+            for (CompletableFuture<Void> waiter : waiters)
+                waiter.complete(null);
+        }
+
+        private void fail(Throwable t) {
+            for (CompletableFuture<Void> waiter : waiters)
+                waiter.completeExceptionally(t);
+        }
+    }
+}
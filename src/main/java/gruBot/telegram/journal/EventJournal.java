@@ -0,0 +1,203 @@
+package gruBot.telegram.journal;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EventJournal {
+    public enum Type {
+        UPDATE,
+        ANNOUNCEMENT,
+        POLL,
+        ARTICLE,
+        VOTE,
+        OUTBOUND,
+        POLL_CLOSE,
+        REMINDER
+    }
+
+    public static final byte OK = 0;
+    public static final byte FAILED = 1;
+
+    static final String SUFFIX = ".journal";
+    static final int HEADER_SIZE = 1 + 1 + 8 + 8 + 8 + 8 + 2 + 4;
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final ObjectMapper payloadWriter = new ObjectMapper()
+            .setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private static volatile EventJournal journal;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retentionSegments;
+    private final long retentionMillis;
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long sequence;
+    private volatile MappedByteBuffer buffer;
+
+    private EventJournal(Path directory, int segmentSize, int retentionSegments, long retentionMillis, long flushMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionSegments = retentionSegments;
+        this.retentionMillis = retentionMillis;
+        Files.createDirectories(directory);
+
+        for (File segment : segments(directory))
+            sequence = Math.max(sequence, sequenceOf(segment));
+        rotate();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::force, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::force, "event-journal-shutdown"));
+    }
+
+    public static void start(Path directory, int segmentSizeMb, int retentionSegments, long retentionHours, long flushMillis) {
+        try {
+            EventJournal started = new EventJournal(directory, segmentSizeMb * 1024 * 1024, retentionSegments,
+                    TimeUnit.HOURS.toMillis(retentionHours), Math.max(1, flushMillis));
+            Metrics.counter("grubot_journal_records_total", "Records written to the event journal", started.written::get);
+            Metrics.counter("grubot_journal_dropped_total", "Records that did not fit into a journal segment", started.dropped::get);
+            journal = started;
+            Logger.log("Event journal started in " + directory, Logger.INFO);
+        } catch (IOException e) {
+            Logger.log("Failed to start event journal: " + e.getMessage(), Logger.ERROR);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return journal != null;
+    }
+
+    public static byte[] payload(Object value) {
+        try {
+            return payloadWriter.writeValueAsBytes(value);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static void record(Type type, byte status, long chatId, long userId, long durationNanos, String detail) {
+        record(type, status, chatId, userId, durationNanos, detail, null);
+    }
+
+    public static void record(Type type, byte status, long chatId, long userId, long durationNanos, String detail, byte[] payload) {
+        EventJournal current = journal;
+        if (current == null)
+            return;
+
+        current.append(type, status, System.currentTimeMillis(), durationNanos, chatId, userId,
+                detail != null ? detail.getBytes(StandardCharsets.UTF_8) : EMPTY, payload != null ? payload : EMPTY);
+    }
+
+    private synchronized void append(Type type, byte status, long timestamp, long durationNanos, long chatId, long userId, byte[] detail, byte[] payload) {
+        int detailLength = Math.min(detail.length, Short.MAX_VALUE);
+        while (detailLength > 0 && detailLength < detail.length && (detail[detailLength] & 0xC0) == 0x80)
+            detailLength--;
+        int size = 4 + HEADER_SIZE + detailLength + payload.length;
+        if (size + 4 > segmentSize) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        try {
+            if (buffer.remaining() < size + 4)
+                rotate();
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+            Logger.log("Failed to rotate event journal: " + e.getMessage(), Logger.ERROR);
+            return;
+        }
+
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put((byte) type.ordinal())
+                .put(status)
+                .putLong(timestamp)
+                .putLong(durationNanos)
+                .putLong(chatId)
+                .putLong(userId)
+                .putShort((short) detailLength)
+                .put(detail, 0, detailLength)
+                .putInt(payload.length)
+                .put(payload);
+        buffer.putInt(start, size - 4);
+        written.incrementAndGet();
+    }
+
+    private void rotate() throws IOException {
+        MappedByteBuffer previous = buffer;
+        if (previous != null)
+            previous.force();
+
+        File segment = directory.resolve(String.format("%020d%s", ++sequence, SUFFIX)).toFile();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(segmentSize);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        applyRetention();
+    }
+
+    private void applyRetention() {
+        List<File> segments = segments(directory);
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            File segment = segments.get(i);
+            boolean tooMany = retentionSegments > 0 && segments.size() - i > retentionSegments;
+            boolean tooOld = retentionMillis > 0 && segment.lastModified() < cutoff;
+            if ((tooMany || tooOld) && !segment.delete())
+                Logger.log("Failed to delete journal segment " + segment, Logger.WARNING);
+        }
+    }
+
+    private void force() {
+        MappedByteBuffer current = buffer;
+        if (current != null)
+            current.force();
+    }
+
+    static List<File> segments(Path directory) {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(SUFFIX));
+        List<File> segments = new ArrayList<>();
+        if (files != null)
+            segments.addAll(Arrays.asList(files));
+        segments.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return segments;
+    }
+
+    private static long sequenceOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package gruBot.telegram.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class JournalReader {
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+    private final EnumSet<EventJournal.Type> types = EnumSet.allOf(EventJournal.Type.class);
+    private Long chatId;
+    private Long userId;
+    private long since = Long.MIN_VALUE;
+    private long until = Long.MAX_VALUE;
+    private String detail;
+    private boolean failedOnly;
+    private long limit = Long.MAX_VALUE;
+
+    private final long[] counts = new long[EventJournal.Type.values().length];
+    private final long[] failures = new long[EventJournal.Type.values().length];
+    private final long[][] durations = new long[EventJournal.Type.values().length][];
+    private long matched;
+    private long scanned;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0)
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        JournalReader reader = new JournalReader();
+        if (options.containsKey("type")) {
+            reader.types.clear();
+            for (String type : options.get("type").split(","))
+                reader.types.add(EventJournal.Type.valueOf(type.trim().toUpperCase()));
+        }
+        if (options.containsKey("chat"))
+            reader.chatId = Long.valueOf(options.get("chat"));
+        if (options.containsKey("user"))
+            reader.userId = Long.valueOf(options.get("user"));
+        if (options.containsKey("since"))
+            reader.since = parseTime(options.get("since"));
+        if (options.containsKey("until"))
+            reader.until = parseTime(options.get("until"));
+        if (options.containsKey("limit"))
+            reader.limit = Long.valueOf(options.get("limit"));
+        reader.detail = options.get("detail");
+        reader.failedOnly = Boolean.valueOf(options.getOrDefault("failed", "false"));
+
+        String directory = options.getOrDefault("dir", "./journal");
+        String mode = options.getOrDefault("mode", "print");
+        long start = System.nanoTime();
+        switch (mode) {
+            case "print":
+                PrintStream printer = new PrintStream(new BufferedOutputStream(System.out, 64 * 1024), false, "UTF-8");
+                reader.scan(directory, new PrintingConsumer(printer));
+                printer.flush();
+                break;
+            case "summary":
+                reader.scan(directory, reader::collect);
+                reader.printSummary(System.out);
+                break;
+            case "export":
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(options.getOrDefault("out", "updates.jsonl")))) {
+                    reader.scan(directory, (buffer, record) -> {
+                        if (record.payloadLength == 0)
+                            return;
+                        byte[] payload = new byte[record.payloadLength];
+                        buffer.position(record.payloadOffset);
+                        buffer.get(payload);
+                        out.write(payload);
+                        out.write('\n');
+                    });
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode + ", expected print, summary or export");
+        }
+        System.err.printf("Scanned %d records, %d matched in %d ms%n", reader.scanned, reader.matched,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static long parseTime(String value) throws ParseException {
+        if (value.matches("-?\\d+"))
+            return Long.valueOf(value);
+        return new SimpleDateFormat(DATE_FORMAT).parse(value).getTime();
+    }
+
+    private void scan(String directory, RecordConsumer consumer) throws IOException {
+        for (File segment : EventJournal.segments(Paths.get(directory))) {
+            MappedByteBuffer buffer;
+            try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            }
+
+            Record record = new Record();
+            int position = 0;
+            while (position + 4 <= buffer.limit()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + 4 + length > buffer.limit())
+                    break;
+
+                record.read(buffer, position + 4);
+                position += 4 + length;
+                scanned++;
+                if (!matches(buffer, record))
+                    continue;
+
+                matched++;
+                consumer.accept(buffer, record);
+                if (matched >= limit)
+                    return;
+            }
+        }
+    }
+
+    private boolean matches(MappedByteBuffer buffer, Record record) {
+        if (record.type < 0 || record.type >= counts.length || !types.contains(EventJournal.Type.values()[record.type]))
+            return false;
+        if (record.timestamp < since || record.timestamp >= until)
+            return false;
+        if (chatId != null && record.chatId != chatId)
+            return false;
+        if (userId != null && record.userId != userId)
+            return false;
+        if (failedOnly && record.status == EventJournal.OK)
+            return false;
+        return detail == null || record.detail(buffer).contains(detail);
+    }
+
+    private void collect(MappedByteBuffer buffer, Record record) {
+        int type = record.type;
+        counts[type]++;
+        if (record.status != EventJournal.OK)
+            failures[type]++;
+
+        long[] values = durations[type];
+        if (values == null)
+            values = durations[type] = new long[1024];
+        else if (counts[type] > values.length)
+            values = durations[type] = Arrays.copyOf(values, values.length * 2);
+        values[(int) counts[type] - 1] = record.duration;
+    }
+
+    private void printSummary(PrintStream out) {
+        out.printf("%-14s%12s%10s%12s%12s%12s%n", "type", "records", "failed", "p50 ms", "p99 ms", "max ms");
+        for (EventJournal.Type type : EventJournal.Type.values()) {
+            int index = type.ordinal();
+            if (counts[index] == 0)
+                continue;
+
+            long[] sorted = Arrays.copyOf(durations[index], (int) counts[index]);
+            Arrays.sort(sorted);
+            out.printf("%-14s%12d%10d%12.2f%12.2f%12.2f%n", type, counts[index], failures[index],
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private interface RecordConsumer {
+        void accept(MappedByteBuffer buffer, Record record) throws IOException;
+    }
+
+    private static class Record {
+        private int type;
+        private byte status;
+        private long timestamp;
+        private long duration;
+        private long chatId;
+        private long userId;
+        private int detailOffset;
+        private int detailLength;
+        private int payloadOffset;
+        private int payloadLength;
+
+        private void read(MappedByteBuffer buffer, int offset) {
+            type = buffer.get(offset);
+            status = buffer.get(offset + 1);
+            timestamp = buffer.getLong(offset + 2);
+            duration = buffer.getLong(offset + 10);
+            chatId = buffer.getLong(offset + 18);
+            userId = buffer.getLong(offset + 26);
+            detailLength = buffer.getShort(offset + 34);
+            detailOffset = offset + 36;
+            payloadLength = buffer.getInt(detailOffset + detailLength);
+            payloadOffset = detailOffset + detailLength + 4;
+        }
+
+        private String detail(MappedByteBuffer buffer) {
+            byte[] bytes = new byte[detailLength];
+            buffer.position(detailOffset);
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class PrintingConsumer implements RecordConsumer {
+        private final PrintStream out;
+        private final SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT + ".SSS");
+
+        private PrintingConsumer(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(MappedByteBuffer buffer, Record record) {
+            out.printf("%s %-12s %-6s chat=%d user=%d %.2fms %s%n", format.format(new Date(record.timestamp)),
+                    EventJournal.Type.values()[record.type], record.status == EventJournal.OK ? "ok" : "failed",
+                    record.chatId, record.userId, record.duration / 1e6, record.detail(buffer));
+        }
+    }
+}
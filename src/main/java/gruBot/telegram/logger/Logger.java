@@ -1,47 +1,181 @@
 package gruBot.telegram.logger;
 
 import java.io.PrintStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.UnsupportedEncodingException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Logger {
     public static final String INFO = "INFO";
     public static final String WARNING = "WARNING";
     public static final String ERROR = "ERROR";
 
+    public static final String OVERFLOW_DROP = "DROP";
+    public static final String OVERFLOW_BLOCK = "BLOCK";
+
     private static final String ANSI_CYAN = "\u001B[36m";
     private static final String ANSI_RED = "\u001B[31m";
     private static final String ANSI_GREEN = "\u001B[32m";
     private static final String ANSI_WHITE = "\u001B[37m";
 
+    private static final int BUFFER_SIZE = 8192;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static final BlockingQueue<String> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private static final AtomicLong written = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static volatile PrintStream consoleOut = createConsole();
+    private static volatile int minLevel = rank(INFO);
+    private static volatile boolean blockOnOverflow = false;
+    private static volatile CachedDate cachedDate = new CachedDate(-1, "");
+
+    static {
+        Thread writer = new Thread(Logger::write, "logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "logger-flush"));
+    }
 
     public static void log(String message, String type) {
-        try {
-            PrintStream consoleOut = new PrintStream(System.out, true, "UTF-8");
-
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
-            String date = dateFormat.format(new Date());
-
-            String color;
-            switch (type) {
-                case INFO:
-                    color = ANSI_CYAN;
-                    break;
-                case WARNING:
-                    color = ANSI_GREEN;
-                    break;
-                case ERROR:
-                    color = ANSI_RED;
-                    break;
-                default:
-                    color = ANSI_WHITE;
-                    break;
+        int level = rank(type);
+        if (level < minLevel)
+            return;
+
+        String line = new StringBuilder(message == null ? 4 : message.length() + 48)
+                .append(color(type))
+                .append('[').append(type).append("] [")
+                .append(date())
+                .append("] ")
+                .append(message)
+                .append(ANSI_WHITE)
+                .toString();
+
+        if (buffer.offer(line))
+            return;
+
+        if (blockOnOverflow || level >= rank(ERROR)) {
+            try {
+                buffer.put(line);
+            } catch (InterruptedException e) {
+                dropped.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public static boolean isEnabled(String type) {
+        return rank(type) >= minLevel;
+    }
+
+    public static void setLevel(String type) {
+        minLevel = rank(type);
+    }
+
+    public static void setOverflowPolicy(String policy) {
+        blockOnOverflow = OVERFLOW_BLOCK.equalsIgnoreCase(policy);
+    }
+
+    public static void setOutput(PrintStream out) {
+        consoleOut = out;
+    }
+
+    public static long getWritten() {
+        return written.get();
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    public static int getPending() {
+        return buffer.size();
+    }
+
+    private static void write() {
+        while (true) {
+            try {
+                consoleOut.println(buffer.take());
+                written.incrementAndGet();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
             }
+        }
+    }
 
-            String line = String.format("%s[%s] [%s] %s%s", color, type, date, message, ANSI_WHITE);
+    private static void flush() {
+        PrintStream consoleOut = Logger.consoleOut;
+        String line;
+        while ((line = buffer.poll()) != null) {
             consoleOut.println(line);
-        } catch (Exception e) {
-            e.printStackTrace();
+            written.incrementAndGet();
+        }
+        consoleOut.flush();
+    }
+
+    private static PrintStream createConsole() {
+        try {
+            return new PrintStream(System.out, true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return System.out;
+        }
+    }
+
+    private static String date() {
+        long second = System.currentTimeMillis() / 1000;
+        CachedDate cached = cachedDate;
+        if (cached.second != second) {
+            cached = new CachedDate(second, DATE_FORMAT.format(Instant.ofEpochSecond(second)));
+            cachedDate = cached;
+        }
+        return cached.text;
+    }
+
+    private static int rank(String type) {
+        if (type == null)
+            return 0;
+
+        switch (type) {
+            case WARNING:
+                return 1;
+            case ERROR:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static String color(String type) {
+        if (type == null)
+            return ANSI_WHITE;
+
+        switch (type) {
+            case INFO:
+                return ANSI_CYAN;
+            case WARNING:
+                return ANSI_GREEN;
+            case ERROR:
+                return ANSI_RED;
+            default:
+                return ANSI_WHITE;
+        }
+    }
+
+    private static class CachedDate {
+        private final long second;
+        private final String text;
+
+        private CachedDate(long second, String text) {
+            this.second = second;
+            this.text = text;
         }
     }
 }
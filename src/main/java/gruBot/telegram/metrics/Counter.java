@@ -0,0 +1,44 @@
+package gruBot.telegram.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter extends Metrics.Family {
+    private final String labelName;
+    private final ConcurrentHashMap<String, LongAdder> values = new ConcurrentHashMap<>();
+
+    Counter(String name, String help, String labelName) {
+        super(name, help);
+        this.labelName = labelName;
+    }
+
+    public void increment(String label) {
+        add(label, 1);
+    }
+
+    public void add(String label, long value) {
+        LongAdder adder = values.get(label);
+        if (adder == null)
+            adder = values.computeIfAbsent(label, key -> new LongAdder());
+        adder.add(value);
+    }
+
+    public long get(String label) {
+        LongAdder adder = values.get(label);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    @Override
+    String type() {
+        return "counter";
+    }
+
+    @Override
+    void write(StringBuilder builder) {
+        for (Map.Entry<String, LongAdder> value : values.entrySet()) {
+            builder.append(name).append('{').append(labelName).append("=\"").append(value.getKey()).append("\"} ")
+                    .append(value.getValue().sum()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package gruBot.telegram.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram extends Metrics.Family {
+    private static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++)
+            BUCKET_NANOS[i] = (long) (BUCKETS[i] * 1_000_000_000L);
+    }
+
+    private final String labelName;
+    private final ConcurrentHashMap<String, Child> children = new ConcurrentHashMap<>();
+
+    Histogram(String name, String help, String labelName) {
+        super(name, help);
+        this.labelName = labelName;
+    }
+
+    public void observe(String label, long nanos) {
+        Child child = children.get(label);
+        if (child == null)
+            child = children.computeIfAbsent(label, key -> new Child());
+
+        int bucket = 0;
+        while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket])
+            bucket++;
+
+        child.buckets[bucket].increment();
+        child.sum.add(nanos);
+    }
+
+    public void observeSince(String label, long startNanos) {
+        observe(label, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    String type() {
+        return "histogram";
+    }
+
+    @Override
+    void write(StringBuilder builder) {
+        for (Map.Entry<String, Child> entry : children.entrySet()) {
+            String label = labelName + "=\"" + entry.getKey() + "\"";
+            Child child = entry.getValue();
+
+            long cumulative = 0;
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                cumulative += child.buckets[i].sum();
+                builder.append(name).append("_bucket{").append(label).append(",le=\"")
+                        .append(i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf").append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            builder.append(name).append("_sum{").append(label).append("} ").append(child.sum.sum() / 1e9).append('\n');
+            builder.append(name).append("_count{").append(label).append("} ").append(cumulative).append('\n');
+        }
+    }
+
+    private static class Child {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sum = new LongAdder();
+
+        private Child() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new LongAdder();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package gruBot.telegram.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+public class Metrics {
+    private static final LinkedHashMap<String, Family> families = new LinkedHashMap<>();
+
+    public static synchronized Histogram histogram(String name, String help, String labelName) {
+        Family family = families.get(name);
+        if (family instanceof Histogram)
+            return (Histogram) family;
+
+        Histogram histogram = new Histogram(name, help, labelName);
+        families.put(name, histogram);
+        return histogram;
+    }
+
+    public static synchronized Counter counter(String name, String help, String labelName) {
+        Family family = families.get(name);
+        if (family instanceof Counter)
+            return (Counter) family;
+
+        Counter counter = new Counter(name, help, labelName);
+        families.put(name, counter);
+        return counter;
+    }
+
+    public static synchronized void counter(String name, String help, LongSupplier supplier) {
+        families.put(name, new Supplied(name, help, "counter", supplier));
+    }
+
+    public static synchronized void gauge(String name, String help, LongSupplier supplier) {
+        families.put(name, new Supplied(name, help, "gauge", supplier));
+    }
+
+    public static String scrape() {
+        List<Family> snapshot;
+        synchronized (Metrics.class) {
+            snapshot = new ArrayList<>(families.values());
+        }
+
+        StringBuilder builder = new StringBuilder(4096);
+        for (Family family : snapshot) {
+            builder.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            builder.append("# TYPE ").append(family.name).append(' ').append(family.type()).append('\n');
+            family.write(builder);
+        }
+        return builder.toString();
+    }
+
+    static abstract class Family {
+        final String name;
+        final String help;
+
+        Family(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        abstract String type();
+
+        abstract void write(StringBuilder builder);
+    }
+
+    private static class Supplied extends Family {
+        private final String type;
+        private final LongSupplier supplier;
+
+        private Supplied(String name, String help, String type, LongSupplier supplier) {
+            super(name, help);
+            this.type = type;
+            this.supplier = supplier;
+        }
+
+        @Override
+        String type() {
+            return type;
+        }
+
+        @Override
+        void write(StringBuilder builder) {
+            builder.append(name).append(' ').append(supplier.getAsLong()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package gruBot.telegram.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import gruBot.telegram.logger.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+public class MetricsServer {
+    private final HttpServer server;
+
+    public MetricsServer(String host, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        this.server.createContext("/metrics", exchange -> {
+            byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        Logger.log("Metrics are available at http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/metrics", Logger.INFO);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+}
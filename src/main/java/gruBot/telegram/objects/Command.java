@@ -0,0 +1,66 @@
+package gruBot.telegram.objects;
+
+import java.util.HashMap;
+
+public class Command {
+    public enum Type {
+        ANNOUNCEMENT,
+        POLL,
+        ARTICLE,
+        PLAIN
+    }
+
+    public static final Command PLAIN = new Command(Type.PLAIN, null, null, null);
+
+    private Type type;
+    private String title;
+    private String text;
+    private HashMap<String, String> options;
+    private long deadline;
+    private long[] reminders;
+
+    public Command(Type type, String title, String text, HashMap<String, String> options) {
+        this(type, title, text, options, 0, new long[0]);
+    }
+
+    public Command(Type type, String title, String text, HashMap<String, String> options, long deadline, long[] reminders) {
+        this.type = type;
+        this.title = title;
+        this.text = text;
+        this.options = options;
+        this.deadline = deadline;
+        this.reminders = reminders;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isPlain() {
+        return type == Type.PLAIN;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public HashMap<String, String> getOptions() {
+        return options;
+    }
+
+    public boolean hasDeadline() {
+        return deadline > 0;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long[] getReminders() {
+        return reminders;
+    }
+}
@@ -0,0 +1,258 @@
+package gruBot.telegram.outbound;
+
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Metrics;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
+import org.telegram.telegrambots.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class OutboundQueue {
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long IDLE_SWEEP_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final Counter calls = Metrics.counter("grubot_outbound_calls_total", "Outbound Telegram calls by outcome", "result");
+
+    private final Transport transport;
+    private final TokenBucket globalBucket;
+    private volatile double chatBurst;
+    private volatile double chatRatePerSecond;
+    private final int maxQueueSize;
+    private final ThreadPoolExecutor senders;
+
+    private final ArrayDeque<Task<?>>[] lanes;
+    private final HashSet<Long> busyChats = new HashSet<>();
+    private final ConcurrentHashMap<Long, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    private int queued;
+    private long waitNanos;
+    private long lastSweep = System.nanoTime();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public OutboundQueue(Transport transport, int threads, int maxQueueSize, double globalRatePerSecond, double chatBurst, double chatRatePerMinute) {
+        this.transport = transport;
+        this.globalBucket = new TokenBucket(globalRatePerSecond, globalRatePerSecond);
+        this.chatBurst = chatBurst;
+        this.chatRatePerSecond = chatRatePerMinute / 60d;
+        this.maxQueueSize = maxQueueSize;
+        this.lanes = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = new ArrayDeque<>();
+
+        this.senders = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "outbound-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Thread scheduler = new Thread(this::schedule, "outbound-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    public void setRates(double globalRatePerSecond, double chatBurst, double chatRatePerMinute) {
+        this.chatBurst = chatBurst;
+        this.chatRatePerSecond = chatRatePerMinute / 60d;
+        globalBucket.setRate(globalRatePerSecond, globalRatePerSecond);
+        for (TokenBucket bucket : chatBuckets.values())
+            bucket.setRate(chatBurst, chatRatePerSecond);
+    }
+
+    public void setThreads(int threads) {
+        if (threads > senders.getMaximumPoolSize()) {
+            senders.setMaximumPoolSize(threads);
+            senders.setCorePoolSize(threads);
+        } else {
+            senders.setCorePoolSize(threads);
+            senders.setMaximumPoolSize(threads);
+        }
+    }
+
+    public <T extends Serializable> CompletableFuture<T> submit(long chatId, BotApiMethod<T> method, Priority priority) {
+        Task<T> task = new Task<>(chatId, method, priority);
+        synchronized (this) {
+            if (queued >= maxQueueSize) {
+                calls.increment("rejected");
+                task.future.completeExceptionally(new RejectedExecutionException("Outbound queue is full"));
+                return task.future;
+            }
+
+            lanes[priority.ordinal()].addLast(task);
+            queued++;
+            notifyAll();
+        }
+        return task.future;
+    }
+
+    public <T extends Serializable> T execute(long chatId, BotApiMethod<T> method, Priority priority) throws TelegramApiException {
+        try {
+            return submit(chatId, method, priority).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Interrupted while waiting for " + method.getMethod(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TelegramApiException)
+                throw (TelegramApiException) e.getCause();
+            throw new TelegramApiException(method.getMethod() + " failed", e.getCause());
+        }
+    }
+
+    public synchronized int getQueueDepth() {
+        return queued;
+    }
+
+    public synchronized int getQueueDepth(Priority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    private void schedule() {
+        while (true) {
+            Task<?> task;
+            try {
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    sweepIdleBuckets(now);
+                    task = next(now);
+                    if (task == null) {
+                        if (waitNanos == Long.MAX_VALUE)
+                            wait();
+                        else
+                            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                        continue;
+                    }
+                    busyChats.add(task.chatId);
+                    queued--;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            senders.execute(() -> send(task));
+        }
+    }
+
+    private Task<?> next(long now) {
+        waitNanos = Long.MAX_VALUE;
+        for (ArrayDeque<Task<?>> lane : lanes) {
+            Iterator<Task<?>> iterator = lane.iterator();
+            while (iterator.hasNext()) {
+                Task<?> task = iterator.next();
+                if (busyChats.contains(task.chatId))
+                    continue;
+
+                TokenBucket chatBucket = task.usesChatBudget() ? chatBucket(task.chatId) : null;
+                long chatWait = chatBucket != null ? chatBucket.nanosUntilAvailable(now) : 0;
+                if (chatWait > 0) {
+                    waitNanos = Math.min(waitNanos, chatWait);
+                    continue;
+                }
+                if (!globalBucket.tryAcquire(now)) {
+                    waitNanos = Math.max(1, globalBucket.nanosUntilAvailable(now));
+                    return null;
+                }
+
+                if (chatBucket != null)
+                    chatBucket.tryAcquire(now);
+                iterator.remove();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private <T extends Serializable> void send(Task<T> task) {
+        boolean retry = false;
+        try {
+            task.attempts++;
+            T result = transport.execute(task.method);
+            calls.increment("sent");
+            task.future.complete(result);
+        } catch (TelegramApiRequestException e) {
+            Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+            if (retryAfter != null && task.attempts < MAX_ATTEMPTS) {
+                Logger.log("Telegram asked to retry " + task.method.getMethod() + " in chat " + task.chatId + " after " + retryAfter + "s", Logger.WARNING);
+                calls.increment("retried");
+                long pausedUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfter);
+                chatBucket(task.chatId).pauseUntil(pausedUntil);
+                globalBucket.pauseUntil(pausedUntil);
+                retry = true;
+            } else {
+                calls.increment("failed");
+                task.future.completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            calls.increment("failed");
+            task.future.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                busyChats.remove(task.chatId);
+                if (retry) {
+                    lanes[task.priority.ordinal()].addFirst(task);
+                    queued++;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private TokenBucket chatBucket(long chatId) {
+        TokenBucket bucket = chatBuckets.get(chatId);
+        if (bucket == null)
+            bucket = chatBuckets.computeIfAbsent(chatId, key -> new TokenBucket(chatBurst, chatRatePerSecond));
+        return bucket;
+    }
+
+    private void sweepIdleBuckets(long now) {
+        if (now - lastSweep < IDLE_SWEEP_NANOS)
+            return;
+
+        lastSweep = now;
+        Iterator<Map.Entry<Long, TokenBucket>> iterator = chatBuckets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, TokenBucket> bucket = iterator.next();
+            if (!busyChats.contains(bucket.getKey()) && bucket.getValue().isIdle(now))
+                iterator.remove();
+        }
+    }
+
+    public interface Transport {
+        <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException;
+    }
+
+    private static class Task<T extends Serializable> {
+        private final long chatId;
+        private final BotApiMethod<T> method;
+        private final Priority priority;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private int attempts;
+
+        private Task(long chatId, BotApiMethod<T> method, Priority priority) {
+            this.chatId = chatId;
+            this.method = method;
+            this.priority = priority;
+        }
+
+        private boolean usesChatBudget() {
+            return !(method instanceof GetChatMember);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package gruBot.telegram.outbound;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.metrics.Metrics;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TelegramTransport {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final PoolingHttpClientConnectionManager pool;
+    private final CloseableHttpClient client;
+    private final HttpHost proxy;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private volatile RequestConfig requestConfig;
+
+    public TelegramTransport(HttpHost proxy, int maxConnections, int maxPerRoute, long connectTimeout, long readTimeout, long acquireTimeout,
+                             long keepAliveSeconds) {
+        this.proxy = proxy;
+        this.pool = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                .build(), (route, config) -> {
+            connectionsOpened.incrementAndGet();
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+        });
+        pool.setValidateAfterInactivity(2000);
+        setLimits(maxConnections, maxPerRoute, connectTimeout, readTimeout, acquireTimeout);
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+                    long advertised = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return advertised > 0 ? Math.min(advertised, keepAlive) : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveSeconds, TimeUnit.SECONDS)
+                .disableCookieManagement()
+                .build();
+
+        Metrics.counter("grubot_telegram_http_requests_total", "Requests sent over the Telegram connection pool", requests::get);
+        Metrics.counter("grubot_telegram_connections_opened_total", "Connections opened to the Telegram Bot API", connectionsOpened::get);
+        Metrics.counter("grubot_telegram_connections_reused_total", "Requests served by an already open connection", this::getConnectionsReused);
+        Metrics.gauge("grubot_telegram_pool_leased", "Telegram connections currently in use", () -> pool.getTotalStats().getLeased());
+        Metrics.gauge("grubot_telegram_pool_available", "Idle keep-alive Telegram connections", () -> pool.getTotalStats().getAvailable());
+        Metrics.gauge("grubot_telegram_pool_pending", "Calls waiting for a Telegram connection", () -> pool.getTotalStats().getPending());
+    }
+
+    public void setLimits(int maxConnections, int maxPerRoute, long connectTimeout, long readTimeout, long acquireTimeout) {
+        pool.setMaxTotal(maxConnections);
+        pool.setDefaultMaxPerRoute(Math.min(maxPerRoute, maxConnections));
+        this.requestConfig = RequestConfig.custom()
+                .setProxy(proxy)
+                .setConnectTimeout((int) connectTimeout)
+                .setSocketTimeout((int) readTimeout)
+                .setConnectionRequestTimeout((int) acquireTimeout)
+                .build();
+    }
+
+    public <T extends Serializable> T execute(String baseUrl, BotApiMethod<T> method) throws TelegramApiException {
+        method.validate();
+
+        HttpPost post = new HttpPost(baseUrl + method.getMethod());
+        post.setConfig(requestConfig);
+        try {
+            post.setEntity(new StringEntity(mapper.writeValueAsString(method), ContentType.APPLICATION_JSON));
+            requests.incrementAndGet();
+            try (CloseableHttpResponse response = client.execute(post)) {
+                return method.deserializeResponse(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new TelegramApiException("Unable to execute " + method.getMethod() + " method", e);
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public long getConnectionsReused() {
+        return Math.max(0, requests.get() - connectionsOpened.get());
+    }
+}
@@ -0,0 +1,54 @@
+package gruBot.telegram.outbound;
+
+public class TokenBucket {
+    private double capacity;
+    private double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (now < pausedUntil || tokens < 1)
+            return false;
+
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized long nanosUntilAvailable(long now) {
+        refill(now);
+        long pause = Math.max(0, pausedUntil - now);
+        if (tokens >= 1)
+            return pause;
+        return Math.max(pause, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    public synchronized void setRate(double capacity, double tokensPerSecond) {
+        refill(System.nanoTime());
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    public synchronized void pauseUntil(long nanos) {
+        pausedUntil = Math.max(pausedUntil, nanos);
+    }
+
+    public synchronized boolean isIdle(long now) {
+        refill(now);
+        return tokens >= capacity && now >= pausedUntil;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,258 @@
+package gruBot.telegram.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.logger.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class AppendLog {
+    public static final String SET = "set";
+    public static final String UPDATE = "update";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Object syncLock = new Object();
+    private final Object lock = new Object();
+    private final ScheduledExecutorService flusher;
+    private FileOutputStream stream;
+    private BufferedOutputStream out;
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private long records;
+
+    public AppendLog(Path file, long flushMillis) {
+        this.file = file;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "append-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, flushMillis);
+        flusher.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public long replay(Consumer<Record> consumer) throws IOException {
+        long good = 0;
+        long count = 0;
+        if (Files.exists(file)) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file.toFile()), BUFFER_SIZE)) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                long offset = 0;
+                int b;
+                while ((b = in.read()) != -1) {
+                    offset++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+
+                    Map<String, Object> map;
+                    try {
+                        map = mapper.readValue(line.toByteArray(), Map.class);
+                    } catch (IOException e) {
+                        if (in.read() != -1)
+                            throw new IOException("Corrupt record at offset " + good + " of " + file + ": " + e.getMessage(), e);
+                        break;
+                    }
+                    consumer.accept(new Record((String) map.get("op"), (String) map.get("c"), (String) map.get("id"), (Map<String, Object>) map.get("f")));
+                    line.reset();
+                    good = offset;
+                    count++;
+                }
+            }
+
+            long size = Files.size(file);
+            if (good < size) {
+                Logger.log("Truncating " + (size - good) + " bytes of incomplete records at the end of " + file, Logger.WARNING);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(good);
+                }
+            }
+        }
+
+        synchronized (lock) {
+            records = count;
+            open();
+        }
+        return count;
+    }
+
+    public CompletableFuture<Void> append(Record record) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        synchronized (lock) {
+            try {
+                write(out, record);
+                records++;
+                waiting.add(durable);
+            } catch (IOException e) {
+                durable.completeExceptionally(e);
+            }
+        }
+        return durable;
+    }
+
+    public void rewrite(Iterable<Record> snapshot) throws IOException {
+        synchronized (syncLock) {
+            synchronized (lock) {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                long count = 0;
+                try (FileOutputStream tmpStream = new FileOutputStream(tmp.toFile())) {
+                    BufferedOutputStream tmpOut = new BufferedOutputStream(tmpStream, BUFFER_SIZE);
+                    for (Record record : snapshot) {
+                        write(tmpOut, record);
+                        count++;
+                    }
+                    tmpOut.flush();
+                    tmpStream.getChannel().force(false);
+                }
+
+                out.flush();
+                stream.close();
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory();
+                open();
+                Logger.log("Compacted " + file + " from " + records + " to " + count + " records", Logger.INFO);
+                records = count;
+                complete(swapWaiting(), null);
+            }
+        }
+    }
+
+    public long getRecords() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    public void close() {
+        flusher.shutdown();
+        sync();
+        synchronized (lock) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Logger.log(e.getMessage(), Logger.ERROR);
+            }
+        }
+    }
+
+    private void sync() {
+        synchronized (syncLock) {
+            List<CompletableFuture<Void>> batch;
+            FileChannel channel;
+            IOException error = null;
+            synchronized (lock) {
+                if (waiting.isEmpty())
+                    return;
+                batch = swapWaiting();
+                channel = stream.getChannel();
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+
+            if (error == null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            if (error != null)
+                Logger.log("Failed to sync " + file + ": " + error.getMessage(), Logger.ERROR);
+            complete(batch, error);
+        }
+    }
+
+    private List<CompletableFuture<Void>> swapWaiting() {
+        List<CompletableFuture<Void>> batch = waiting;
+        waiting = new ArrayList<>();
+        return batch;
+    }
+
+    private void complete(List<CompletableFuture<Void>> batch, Throwable error) {
+        for (CompletableFuture<Void> future : batch)
+            if (error == null)
+                future.complete(null);
+            else
+                future.completeExceptionally(error);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            Logger.log("Failed to sync directory of " + file + ": " + e.getMessage(), Logger.WARNING);
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        stream = new FileOutputStream(file.toFile(), true);
+        out = new BufferedOutputStream(stream, BUFFER_SIZE);
+    }
+
+    private static void write(BufferedOutputStream target, Record record) throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("op", record.getOperation());
+        map.put("c", record.getCollection());
+        map.put("id", record.getId());
+        map.put("f", record.getFields());
+        target.write(mapper.writeValueAsBytes(map));
+        target.write('\n');
+    }
+
+    public static class Record {
+        private final String operation;
+        private final String collection;
+        private final String id;
+        private final Map<String, Object> fields;
+
+        public Record(String operation, String collection, String id, Map<String, Object> fields) {
+            this.operation = operation;
+            this.collection = collection;
+            this.id = id;
+            this.fields = fields;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Map<String, Object> getFields() {
+            return fields;
+        }
+    }
+}
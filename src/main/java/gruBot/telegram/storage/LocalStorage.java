@@ -0,0 +1,462 @@
+package gruBot.telegram.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.bot.GruBot;
+import gruBot.telegram.bot.GruBotConfig;
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Histogram;
+import gruBot.telegram.metrics.Metrics;
+import gruBot.telegram.objects.Command;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class LocalStorage implements Storage {
+    private static final Histogram latency = Metrics.histogram("grubot_local_storage_duration_seconds", "Latency of local storage writes until durable", "operation");
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String ID_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final String[] COLLECTIONS = {"groups", "announcements", "articles", "votes"};
+
+    private final GruBot bot;
+    private final AppendLog log;
+    private final Map<String, Map<String, Map<String, Object>>> collections = new HashMap<>();
+    private final Map<Long, String> groupsByChat = new HashMap<>();
+    private final Map<String, String> pollsByMessage = new HashMap<>();
+    private final PollIndex pollIndex = new PollIndex();
+    private final Map<String, List<ChangeListener>> listeners = new ConcurrentHashMap<>();
+    private final ExecutorService events;
+    private final ScheduledExecutorService scheduler;
+    private final long replayMillis;
+
+    public LocalStorage(GruBot bot, Path directory) {
+        this.bot = bot;
+        for (String collection : COLLECTIONS)
+            collections.put(collection, new HashMap<>());
+
+        this.events = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "local-storage-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "local-storage-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Logger.log("Replaying local storage from " + directory + "...", Logger.INFO);
+        long start = System.nanoTime();
+        this.log = new AppendLog(directory.resolve("storage.log"), GruBotConfig.LOCAL_STORAGE_FLUSH);
+        try {
+            log.replay(record -> apply(record.getOperation(), record.getCollection(), record.getId(), record.getFields()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to replay local storage: " + e.getMessage(), e);
+        }
+        this.replayMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Logger.log("Local storage replayed " + log.getRecords() + " records in " + replayMillis + " ms: " + groupsByChat.size()
+                + " groups, " + pollIndex.size() + " open polls", Logger.INFO);
+
+        Metrics.gauge("grubot_local_storage_records", "Records in the local storage log", log::getRecords);
+        scheduler.scheduleWithFixedDelay(this::compactIfNeeded, 1, 1, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(this::expirePolls, GruBotConfig.POLL_LISTENER_REFRESH, GruBotConfig.POLL_LISTENER_REFRESH, TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "local-storage-shutdown"));
+    }
+
+    @Override
+    public void applyConfig() {
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> checkGroupExists(long chatId) {
+        boolean exists = groupsByChat.containsKey(chatId);
+        Logger.log("Group exists - " + exists, Logger.INFO);
+        return CompletableFuture.completedFuture(exists);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Void> checkUserExistsInGroup(Update update) {
+        long chatId = update.getMessage().getChatId();
+        String userId = String.valueOf(update.getMessage().getFrom().getId());
+
+        synchronized (this) {
+            String id = groupsByChat.get(chatId);
+            if (id == null)
+                return CompletableFuture.completedFuture(null);
+
+            Map<String, Object> users = (Map<String, Object>) collections.get("groups").get(id).get("users");
+            if (users != null && Boolean.TRUE.equals(users.get(userId)))
+                return CompletableFuture.completedFuture(null);
+
+            Logger.log("Adding user to the group", Logger.INFO);
+            track("addUserToGroup", write(AppendLog.UPDATE, "groups", id, Collections.singletonMap("users." + userId, true)));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> createNewGroup(Update update) {
+        Logger.log("Creating new group...", Logger.INFO);
+        Message message = update.getMessage();
+
+        HashMap<String, Object> groupMap = new HashMap<>();
+        groupMap.put("chatId", message.getChatId());
+        groupMap.put("name", message.getChat().getTitle());
+        groupMap.put("users", new HashMap<>());
+
+        synchronized (this) {
+            if (groupsByChat.containsKey(message.getChatId()))
+                return CompletableFuture.completedFuture(null);
+            track("createNewGroup", write(AppendLog.SET, "groups", newId(), groupMap));
+        }
+        Logger.log("Group created...", Logger.INFO);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewAnnouncement(Update update, Command command) {
+        Logger.log("Creating new announcement...", Logger.INFO);
+        HashMap<String, Object> announcement = newAction(update, command);
+        announcement.put("text", command.getText());
+        storeAction("createNewAnnouncement", "announcements", announcement);
+        Logger.log("Announcement created", Logger.INFO);
+        return CompletableFuture.completedFuture(announcement);
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewArticle(Update update, Command command) {
+        Logger.log("Creating new article...", Logger.INFO);
+        HashMap<String, Object> article = newAction(update, command);
+        article.put("text", command.getText());
+        storeAction("createNewArticle", "articles", article);
+        Logger.log("Article created", Logger.INFO);
+        return CompletableFuture.completedFuture(article);
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, Object>> createNewPoll(Update update, Command command) {
+        Logger.log("Creating new poll...", Logger.INFO);
+        HashMap<String, Object> vote = newAction(update, command);
+        vote.put("voteOptions", command.getOptions());
+        PollDeadline.put(vote, command);
+        storeAction("createNewPoll", "votes", vote);
+        Logger.log("Poll created", Logger.INFO);
+        return CompletableFuture.completedFuture(vote);
+    }
+
+    @SuppressWarnings("unchecked")
+    private HashMap<String, Object> newAction(Update update, Command command) {
+        Message message = update.getMessage();
+        HashMap<String, Object> action = new HashMap<>();
+        action.put("group", message.getChatId());
+        action.put("groupName", message.getChat().getTitle());
+        action.put("messageId", -1);
+        action.put("author", message.getFrom().getId());
+        action.put("authorName", message.getFrom().getFirstName() + " " + message.getFrom().getLastName());
+        action.put("desc", command.getTitle());
+        action.put("date", new Date());
+        action.put("type", "TELEGRAM");
+
+        HashMap<String, String> users = new HashMap<>();
+        synchronized (this) {
+            String id = groupsByChat.get(message.getChatId());
+            Map<String, Object> groupUsers = id != null ? (Map<String, Object>) collections.get("groups").get(id).get("users") : null;
+            if (groupUsers != null)
+                for (Map.Entry<String, Object> user : groupUsers.entrySet())
+                    if (Boolean.TRUE.equals(user.getValue()))
+                        users.put(user.getKey(), "new");
+        }
+        action.put("users", users);
+        return action;
+    }
+
+    private void storeAction(String operation, String collection, HashMap<String, Object> action) {
+        String id = newId();
+        synchronized (this) {
+            track(operation, write(AppendLog.SET, collection, id, new HashMap<>(action)));
+        }
+        action.put("id", id);
+    }
+
+    @Override
+    public CompletableFuture<Void> setMessageIdToAction(int messageId, HashMap<String, Object> action) {
+        String id = (String) action.get("id");
+        synchronized (this) {
+            String collection = findCollection(id);
+            if (collection == null)
+                return CompletableFuture.completedFuture(null);
+            return track("setMessageIdToAction", write(AppendLog.UPDATE, collection, id, Collections.singletonMap("messageId", messageId)));
+        }
+    }
+
+    private String findCollection(String id) {
+        for (String collection : COLLECTIONS)
+            if (collections.get(collection).containsKey(id))
+                return collection;
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<EditMessageText> updatePollAnswer(int userId, int pollOptionNumber, long chatId, int pollMessageId) {
+        PollIndex.Entry poll = pollIndex.get(chatId, pollMessageId);
+        if (poll == null)
+            return CompletableFuture.completedFuture(null);
+
+        String answer = String.valueOf(pollOptionNumber);
+        String previous = poll.vote(userId, pollOptionNumber);
+        if (poll.isClosed())
+            return CompletableFuture.completedFuture(null);
+        if (!answer.equals(previous)) {
+            synchronized (this) {
+                String id = pollsByMessage.get(chatId + "_" + pollMessageId);
+                if (id != null)
+                    track("updatePollAnswer", write(AppendLog.UPDATE, "votes", id, Collections.singletonMap("users." + userId, pollOptionNumber)));
+            }
+        }
+        return CompletableFuture.completedFuture(getMessageText(poll));
+    }
+
+    @Override
+    public CompletableFuture<PollIndex.Entry> getPoll(long chatId, int pollMessageId) {
+        return CompletableFuture.completedFuture(pollIndex.get(chatId, pollMessageId));
+    }
+
+    @Override
+    public CompletableFuture<PollIndex.Entry> closePoll(long chatId, int pollMessageId) {
+        PollIndex.Entry poll = pollIndex.get(chatId, pollMessageId);
+        if (poll == null || !poll.close())
+            return CompletableFuture.completedFuture(null);
+
+        synchronized (this) {
+            String id = pollsByMessage.get(chatId + "_" + pollMessageId);
+            if (id != null)
+                track("closePoll", write(AppendLog.UPDATE, "votes", id, PollDeadline.closedFields(poll)));
+        }
+        return CompletableFuture.completedFuture(poll);
+    }
+
+    @Override
+    public void loadPollDeadlines(Consumer<PollDeadline> consumer) {
+        List<PollDeadline> deadlines = new ArrayList<>();
+        synchronized (this) {
+            for (Map<String, Object> document : collections.get("votes").values()) {
+                PollDeadline deadline = PollDeadline.from(document);
+                if (deadline != null && dateOf(document).after(pollCutoff()))
+                    deadlines.add(deadline);
+            }
+        }
+        for (PollDeadline deadline : deadlines)
+            consumer.accept(deadline);
+    }
+
+    @Override
+    public EditMessageText getMessageText(PollIndex.Entry poll) {
+        return PollMessages.render(bot, poll);
+    }
+
+    @Override
+    public synchronized void addChangeListener(String collection, ChangeListener listener) {
+        List<StorageChange> existing = new ArrayList<>();
+        Map<String, Map<String, Object>> documents = collections.get(collection);
+        if (documents != null)
+            for (Map.Entry<String, Map<String, Object>> document : documents.entrySet())
+                existing.add(new StorageChange(StorageChange.Type.ADDED, collection, document.getKey(), Collections.unmodifiableMap(copy(document.getValue()))));
+
+        events.execute(() -> {
+            for (StorageChange change : existing)
+                listener.onChange(change);
+        });
+        listeners.computeIfAbsent(collection, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public WarmUp warmUp() {
+        return new WarmUp() {
+            @Override
+            public boolean awaitReady(double fraction, long timeoutMillis) {
+                return true;
+            }
+
+            @Override
+            public double getProgress() {
+                return 1;
+            }
+
+            @Override
+            public long getDurationMillis() {
+                return replayMillis;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Void> write(String operation, String collection, String id, Map<String, Object> fields) {
+        Map<String, Object> normalized;
+        try {
+            normalized = mapper.readValue(mapper.writeValueAsBytes(fields), Map.class);
+        } catch (IOException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        apply(operation, collection, id, normalized);
+        return log.append(new AppendLog.Record(operation, collection, id, normalized));
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void apply(String operation, String collection, String id, Map<String, Object> fields) {
+        Map<String, Map<String, Object>> documents = collections.computeIfAbsent(collection, key -> new HashMap<>());
+        Map<String, Object> document = documents.get(id);
+        boolean modified;
+        if (AppendLog.SET.equals(operation)) {
+            modified = document != null;
+            document = new HashMap<>(fields);
+            documents.put(id, document);
+        } else {
+            if (document == null)
+                return;
+            modified = true;
+            for (Map.Entry<String, Object> field : fields.entrySet())
+                setField(document, field.getKey(), field.getValue());
+        }
+
+        if ("groups".equals(collection) && document.get("chatId") != null)
+            groupsByChat.put(Long.valueOf(document.get("chatId").toString()), id);
+        if ("votes".equals(collection))
+            indexPoll(id, document, fields, modified);
+
+        List<ChangeListener> collectionListeners = listeners.get(collection);
+        if (collectionListeners != null && !collectionListeners.isEmpty()) {
+            StorageChange change = new StorageChange(modified ? StorageChange.Type.MODIFIED : StorageChange.Type.ADDED, collection, id,
+                    Collections.unmodifiableMap(copy(document)));
+            events.execute(() -> {
+                for (ChangeListener listener : collectionListeners)
+                    listener.onChange(change);
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copy(Map<String, Object> document) {
+        Map<String, Object> copy = new HashMap<>(document);
+        for (Map.Entry<String, Object> field : copy.entrySet())
+            if (field.getValue() instanceof Map)
+                field.setValue(copy((Map<String, Object>) field.getValue()));
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setField(Map<String, Object> document, String path, Object value) {
+        String[] parts = path.split("\\.");
+        Map<String, Object> target = document;
+        for (int i = 0; i < parts.length - 1; i++) {
+            Object child = target.get(parts[i]);
+            if (!(child instanceof Map)) {
+                child = new HashMap<String, Object>();
+                target.put(parts[i], child);
+            }
+            target = (Map<String, Object>) child;
+        }
+        target.put(parts[parts.length - 1], value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void indexPoll(String id, Map<String, Object> document, Map<String, Object> fields, boolean modified) {
+        Object chatId = document.get("group");
+        Object messageId = document.get("messageId");
+        if (chatId == null || messageId == null || Integer.valueOf(messageId.toString()) < 0)
+            return;
+
+        long chat = Long.valueOf(chatId.toString());
+        int message = Integer.valueOf(messageId.toString());
+        pollsByMessage.put(chat + "_" + message, id);
+        if (Boolean.TRUE.equals(document.get("closed")) || !dateOf(document).after(pollCutoff())) {
+            if (pollIndex.remove(chat, message) != null)
+                bot.getPollEditScheduler().forget(chat, message);
+            return;
+        }
+
+        PollIndex.Entry poll = pollIndex.get(chat, message);
+        if (poll == null) {
+            Object deadline = document.get("deadline");
+            pollIndex.put(chat, message, "votes/" + id, dateOf(document), (String) document.get("desc"),
+                    (Map<String, String>) document.get("voteOptions"), (Map<String, ?>) document.get("users"),
+                    deadline instanceof Number ? new Date(((Number) deadline).longValue()) : null);
+            return;
+        }
+
+        if (modified)
+            for (Map.Entry<String, Object> field : fields.entrySet())
+                if (field.getKey().startsWith("users."))
+                    poll.setUsers(Collections.singletonMap(field.getKey().substring("users.".length()), field.getValue()));
+    }
+
+    private static Date dateOf(Map<String, Object> document) {
+        Object date = document.get("date");
+        return date instanceof Number ? new Date(((Number) date).longValue()) : new Date(0);
+    }
+
+    private Date pollCutoff() {
+        return new Date(System.currentTimeMillis() - GruBotConfig.POLL_ACTIVE_DAYS * 24 * 60 * 60 * 1000L);
+    }
+
+    private void expirePolls() {
+        for (PollIndex.Entry poll : pollIndex.removeOlderThan(pollCutoff()))
+            bot.getPollEditScheduler().forget(poll.getChatId(), poll.getMessageId());
+    }
+
+    private synchronized void compactIfNeeded() {
+        long records = log.getRecords();
+        long documents = 0;
+        for (Map<String, Map<String, Object>> collection : collections.values())
+            documents += collection.size();
+        if (records < GruBotConfig.LOCAL_STORAGE_COMPACT_RECORDS || records < documents * 2)
+            return;
+
+        List<AppendLog.Record> snapshot = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Map<String, Object>>> collection : collections.entrySet())
+            for (Map.Entry<String, Map<String, Object>> document : collection.getValue().entrySet())
+                snapshot.add(new AppendLog.Record(AppendLog.SET, collection.getKey(), document.getKey(), document.getValue()));
+        try {
+            log.rewrite(snapshot);
+        } catch (IOException e) {
+            Logger.log("Local storage compaction failed: " + e.getMessage(), Logger.ERROR);
+        }
+    }
+
+    private CompletableFuture<Void> track(String operation, CompletableFuture<Void> future) {
+        long start = System.nanoTime();
+        return future.whenComplete((result, e) -> {
+            latency.observeSince(operation, start);
+            if (e != null)
+                Logger.log(e.getMessage(), Logger.ERROR);
+        });
+    }
+
+    private static String newId() {
+        StringBuilder id = new StringBuilder(20);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20; i++)
+            id.append(ID_ALPHABET.charAt(random.nextInt(ID_ALPHABET.length())));
+        return id.toString();
+    }
+}
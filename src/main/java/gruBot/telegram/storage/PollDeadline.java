@@ -0,0 +1,89 @@
+package gruBot.telegram.storage;
+
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.objects.Command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PollDeadline {
+    private final long chatId;
+    private final int messageId;
+    private final long deadline;
+    private final long[] reminders;
+
+    public PollDeadline(long chatId, int messageId, long deadline, long[] reminders) {
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.deadline = deadline;
+        this.reminders = reminders;
+    }
+
+    public static void put(Map<String, Object> poll, Command command) {
+        if (!command.hasDeadline())
+            return;
+
+        List<Date> reminders = new ArrayList<>();
+        for (long reminder : command.getReminders())
+            reminders.add(new Date(reminder));
+        poll.put("deadline", new Date(command.getDeadline()));
+        poll.put("reminders", reminders);
+    }
+
+    public static PollDeadline from(Map<String, Object> poll) {
+        if (poll == null || Boolean.TRUE.equals(poll.get("closed")))
+            return null;
+
+        Object chatId = poll.get("group");
+        Object messageId = poll.get("messageId");
+        long deadline = millis(poll.get("deadline"));
+        if (chatId == null || messageId == null || Integer.valueOf(messageId.toString()) < 0 || deadline <= 0)
+            return null;
+
+        long[] reminders = new long[0];
+        if (poll.get("reminders") instanceof List) {
+            List<?> values = (List<?>) poll.get("reminders");
+            reminders = new long[values.size()];
+            for (int i = 0; i < reminders.length; i++)
+                reminders[i] = millis(values.get(i));
+            Arrays.sort(reminders);
+        }
+        return new PollDeadline(Long.valueOf(chatId.toString()), Integer.valueOf(messageId.toString()), deadline, reminders);
+    }
+
+    public static Map<String, Object> closedFields(PollIndex.Entry poll) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("closed", true);
+        fields.put("closedAt", new Date());
+        fields.put("results", poll.getResults());
+        return fields;
+    }
+
+    private static long millis(Object value) {
+        if (value instanceof Date)
+            return ((Date) value).getTime();
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        return 0;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long[] getReminders() {
+        return reminders;
+    }
+}
@@ -0,0 +1,112 @@
+package gruBot.telegram.storage;
+
+import gruBot.telegram.bot.GruBot;
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.cache.PollTally;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class PollMessages {
+    private static final DateTimeFormatter DEADLINE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm").withZone(ZoneId.systemDefault());
+
+    public static EditMessageText render(GruBot bot, PollIndex.Entry poll) {
+        StringBuilder builder = renderTally(poll);
+        if (poll.getDeadline() != null)
+            builder.append("\r\n").append(deadlineLine(poll.getDeadline().getTime()));
+
+        return new EditMessageText()
+                .setText(builder.toString())
+                .setReplyMarkup(bot.getVoteKeyboard(poll.getVoteOptions()));
+    }
+
+    public static EditMessageText renderClosed(PollIndex.Entry poll) {
+        return new EditMessageText()
+                .setText(renderTally(poll).append("\r\n").append("Голосование завершено").toString());
+    }
+
+    public static String results(PollIndex.Entry poll) {
+        Map<String, Integer> results = poll.getResults();
+        int best = 0;
+        for (String option : poll.getVoteOptions().keySet())
+            best = Math.max(best, results.get(option));
+
+        StringBuilder builder = new StringBuilder("Итоги голосования:\r\n").append(poll.getTitle());
+        StringBuilder winners = new StringBuilder();
+        for (Map.Entry<String, String> option : poll.getVoteOptions().entrySet()) {
+            int votes = results.get(option.getKey());
+            builder.append("\r\n").append(option.getKey()).append(". ").append(option.getValue()).append(" [").append(votes).append("]");
+            if (best > 0 && votes == best)
+                winners.append(winners.length() > 0 ? ", " : "").append(option.getValue());
+        }
+        builder.append("\r\n\r\n");
+        if (best == 0)
+            builder.append("Никто не проголосовал");
+        else
+            builder.append("Победил вариант: ").append(winners);
+        return builder.toString();
+    }
+
+    public static String reminder(PollIndex.Entry poll, List<String> nonVoters, int maxMentions, long remainingMillis) {
+        StringBuilder builder = new StringBuilder("Напоминание: до окончания голосования осталось ")
+                .append(formatDuration(remainingMillis))
+                .append("\r\n")
+                .append(escapeHtml(poll.getTitle()))
+                .append("\r\n")
+                .append("Не проголосовало [").append(nonVoters.size()).append("]");
+
+        int mentions = Math.min(maxMentions, nonVoters.size());
+        for (int i = 0; i < mentions; i++)
+            builder.append(i == 0 ? "\r\n" : " ").append("<a href=\"tg://user?id=").append(nonVoters.get(i)).append("\">•</a>");
+        return builder.toString();
+    }
+
+    public static String deadlineLine(long deadline) {
+        return "Завершится: " + DEADLINE_FORMAT.format(Instant.ofEpochMilli(deadline));
+    }
+
+    private static StringBuilder renderTally(PollIndex.Entry poll) {
+        HashMap<String, String> voteOptions = poll.getVoteOptions();
+        PollTally tally = poll.getTally();
+
+        StringBuilder builder = new StringBuilder(poll.getTitle());
+        for (Map.Entry<String, String> entry : voteOptions.entrySet()) {
+            builder.append("\r\n")
+                    .append(entry.getKey())
+                    .append(". ")
+                    .append(entry.getValue())
+                    .append(" [")
+                    .append(tally.get(entry.getKey().trim()))
+                    .append("]");
+        }
+        builder.append("\r\n\r\n")
+                .append("Не проголосовало [")
+                .append(tally.get("new"))
+                .append("]");
+        return builder;
+    }
+
+    private static String formatDuration(long millis) {
+        long minutes = Math.max(1, TimeUnit.MILLISECONDS.toMinutes(millis + TimeUnit.SECONDS.toMillis(30)));
+        long days = minutes / (24 * 60);
+        long hours = minutes / 60 % 24;
+        StringBuilder builder = new StringBuilder();
+        if (days > 0)
+            builder.append(days).append(" д ");
+        if (hours > 0)
+            builder.append(hours).append(" ч ");
+        if (minutes % 60 > 0)
+            builder.append(minutes % 60).append(" мин");
+        return builder.toString().trim();
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,46 @@
+package gruBot.telegram.storage;
+
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.objects.Command;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface Storage {
+    CompletableFuture<Boolean> checkGroupExists(long chatId);
+
+    CompletableFuture<Void> checkUserExistsInGroup(Update update);
+
+    CompletableFuture<Void> createNewGroup(Update update);
+
+    CompletableFuture<HashMap<String, Object>> createNewAnnouncement(Update update, Command command);
+
+    CompletableFuture<HashMap<String, Object>> createNewArticle(Update update, Command command);
+
+    CompletableFuture<HashMap<String, Object>> createNewPoll(Update update, Command command);
+
+    CompletableFuture<Void> setMessageIdToAction(int messageId, HashMap<String, Object> action);
+
+    CompletableFuture<EditMessageText> updatePollAnswer(int userId, int pollOptionNumber, long chatId, int pollMessageId);
+
+    EditMessageText getMessageText(PollIndex.Entry poll);
+
+    CompletableFuture<PollIndex.Entry> getPoll(long chatId, int pollMessageId);
+
+    CompletableFuture<PollIndex.Entry> closePoll(long chatId, int pollMessageId);
+
+    void loadPollDeadlines(Consumer<PollDeadline> consumer) throws Exception;
+
+    void addChangeListener(String collection, ChangeListener listener);
+
+    WarmUp warmUp();
+
+    void applyConfig();
+
+    interface ChangeListener {
+        void onChange(StorageChange change);
+    }
+}
@@ -0,0 +1,39 @@
+package gruBot.telegram.storage;
+
+import java.util.Map;
+
+public class StorageChange {
+    public enum Type {
+        ADDED,
+        MODIFIED,
+        REMOVED
+    }
+
+    private final Type type;
+    private final String collection;
+    private final String id;
+    private final Map<String, Object> data;
+
+    public StorageChange(Type type, String collection, String id, Map<String, Object> data) {
+        this.type = type;
+        this.collection = collection;
+        this.id = id;
+        this.data = data;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+}
@@ -0,0 +1,9 @@
+package gruBot.telegram.storage;
+
+public interface WarmUp {
+    boolean awaitReady(double fraction, long timeoutMillis) throws InterruptedException;
+
+    double getProgress();
+
+    long getDurationMillis();
+}
@@ -0,0 +1,126 @@
+package gruBot.telegram.utils;
+
+import gruBot.telegram.bot.GruBotConfig;
+import gruBot.telegram.logger.Logger;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class ConfigWatcher {
+    private static final long SETTLE_MILLIS = 200;
+    private static final String[] RESTART_ONLY = {
+            "BOT_TOKEN", "BOT_USERNAME", "PROJECT_ID", "UPDATES_MODE",
+            "WEBHOOK_URL", "WEBHOOK_HOST", "WEBHOOK_PORT", "WEBHOOK_PATH", "WEBHOOK_SECRET", "WEBHOOK_THREADS", "WEBHOOK_QUEUE_SIZE",
+            "CLUSTER_HOST", "CLUSTER_PORT", "CLUSTER_SECRET", "CLUSTER_ROUTER_URL", "CLUSTER_NODE_URL", "CLUSTER_NODES", "CLUSTER_HEARTBEAT", "CLUSTER_NODE_TIMEOUT", "CLUSTER_VIRTUAL_NODES",
+            "STORAGE_BACKEND", "LOCAL_STORAGE_DIR", "LOCAL_STORAGE_FLUSH",
+            "DISPATCHER_POOL_SIZE", "DISPATCHER_QUEUE_SIZE", "DISPATCHER_PRIORITY_QUEUE_SIZE", "OUTBOUND_QUEUE_SIZE", "TELEGRAM_KEEP_ALIVE",
+            "POLL_LISTENER_REFRESH", "POLL_DEADLINE_TICK", "POLL_DEADLINE_WHEEL_SIZE", "POLL_DEADLINE_CONCURRENCY", "WARMUP_ENABLED", "METRICS_HOST", "METRICS_PORT", "CONFIG_RELOAD",
+            "JOURNAL_ENABLED", "JOURNAL_DIR", "JOURNAL_SEGMENT_SIZE", "JOURNAL_RETENTION_SEGMENTS", "JOURNAL_RETENTION_HOURS", "JOURNAL_FLUSH"
+    };
+
+    private final Path file;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public ConfigWatcher(Path file) throws IOException {
+        this.file = file.toAbsolutePath().normalize();
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "config-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+        Logger.log("Watching " + file + " for config changes", Logger.INFO);
+    }
+
+    public void stop() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents())
+                if (event.context() instanceof Path && file.getFileName().equals(event.context()))
+                    changed = true;
+            key.reset();
+
+            if (changed) {
+                try {
+                    Thread.sleep(SETTLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                drainEvents();
+                reload();
+            }
+        }
+    }
+
+    private void drainEvents() {
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    public void reload() {
+        Map<String, Object> values;
+        try {
+            values = XMLReader.parse(XMLReader.readProperties());
+        } catch (Exception e) {
+            Logger.log("Config reload failed, keeping the running config: " + e.getMessage(), Logger.WARNING);
+            return;
+        }
+
+        List<String> restartOnly = Arrays.asList(RESTART_ONLY);
+        for (Map.Entry<String, Object> setting : values.entrySet()) {
+            if (!restartOnly.contains(setting.getKey())) {
+                set(setting.getKey(), setting.getValue());
+            } else if (!Objects.equals(get(setting.getKey()), setting.getValue())) {
+                Logger.log(setting.getKey() + " changed, restart to apply it", Logger.WARNING);
+            }
+        }
+
+        XMLReader.applyLogging();
+        GruBotConfig.changed();
+        Logger.log("Config reloaded from " + file, Logger.INFO);
+    }
+
+    private static Object get(String name) {
+        try {
+            return GruBotConfig.class.getField(name).get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(String name, Object value) {
+        try {
+            Field field = GruBotConfig.class.getField(name);
+            field.set(null, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package gruBot.telegram.utils;
+
+import gruBot.telegram.logger.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class TimingWheel<T> {
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickMillis;
+    private final Bucket<T>[] buckets;
+    private final int mask;
+    private final Consumer<T> onExpire;
+    private final Queue<Timeout<T>> additions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final long startTime;
+    private final Thread worker;
+    private long tick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(String name, long tickMillis, int wheelSize, Consumer<T> onExpire) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = Math.max(1, tickMillis);
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++)
+            buckets[i] = new Bucket<>();
+        this.mask = size - 1;
+        this.onExpire = onExpire;
+        this.startTime = System.currentTimeMillis();
+
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Timeout<T> schedule(T task, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(this, task, deadlineMillis);
+        pending.incrementAndGet();
+        additions.add(timeout);
+        return timeout;
+    }
+
+    public long getPending() {
+        return pending.get();
+    }
+
+    public void stop() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!worker.isInterrupted()) {
+            long tickDeadline = startTime + (tick + 1) * tickMillis;
+            long remaining;
+            while ((remaining = tickDeadline - System.currentTimeMillis()) > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(remaining));
+                if (worker.isInterrupted())
+                    return;
+            }
+
+            transferAdditions();
+            expire(buckets[(int) (tick & mask)], tickDeadline);
+            tick++;
+        }
+    }
+
+    private void transferAdditions() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout<T> timeout = additions.poll();
+            if (timeout == null)
+                return;
+            if (timeout.state.get() == CANCELLED)
+                continue;
+
+            long calculated = Math.max(0, timeout.deadline - startTime) / tickMillis;
+            timeout.remainingRounds = (calculated - tick) / buckets.length;
+            buckets[(int) (Math.max(calculated, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket<T> bucket, long tickDeadline) {
+        Timeout<T> timeout = bucket.head;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            if (timeout.state.get() == CANCELLED) {
+                bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0 && timeout.deadline <= tickDeadline) {
+                bucket.remove(timeout);
+                if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                    pending.decrementAndGet();
+                    try {
+                        onExpire.accept(timeout.task);
+                    } catch (Exception e) {
+                        Logger.log("Timer task failed: " + e.getMessage(), Logger.ERROR);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    public static class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final T task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        private Timeout<T> next;
+        private Timeout<T> previous;
+
+        private Timeout(TimingWheel<T> wheel, T task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED))
+                return false;
+            wheel.pending.decrementAndGet();
+            return true;
+        }
+
+        public T getTask() {
+            return task;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private static class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        private void add(Timeout<T> timeout) {
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null)
+                head = timeout;
+            else
+                tail.next = timeout;
+            tail = timeout;
+        }
+
+        private void remove(Timeout<T> timeout) {
+            if (timeout.previous != null)
+                timeout.previous.next = timeout.next;
+            else
+                head = timeout.next;
+            if (timeout.next != null)
+                timeout.next.previous = timeout.previous;
+            else
+                tail = timeout.previous;
+            timeout.next = null;
+            timeout.previous = null;
+        }
+    }
+}
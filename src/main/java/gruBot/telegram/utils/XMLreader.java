@@ -5,23 +5,76 @@ import gruBot.telegram.logger.Logger;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 public class XMLReader {
-    public static void readBotConfig() {
+    public static Path getConfigPath() {
+        return Paths.get(System.getProperty("gruBot.config", "./config/gruBot-telegram.xml"));
+    }
+
+    public static boolean readBotConfig() {
         try {
             Logger.log("Reading config...", Logger.INFO);
-            File file = new File("./config/gruBot-telegram.xml");
-            FileInputStream fileInput = new FileInputStream(file);
-            Properties properties = new Properties();
-            properties.loadFromXML(fileInput);
-            fileInput.close();
+            for (Map.Entry<String, Object> setting : parse(readProperties()).entrySet())
+                GruBotConfig.class.getField(setting.getKey()).set(null, setting.getValue());
 
-            GruBotConfig.BOT_TOKEN = properties.getProperty("BOT_TOKEN");
-            GruBotConfig.BOT_USERNAME = properties.getProperty("BOT_USERNAME");
-            GruBotConfig.PROJECT_ID = properties.getProperty("PROJECT_ID");
+            applyLogging();
+            return true;
         } catch (Exception e) {
             Logger.log(e.getMessage(), Logger.ERROR);
+            return false;
+        }
+    }
+
+    public static Properties readProperties() throws IOException {
+        File file = getConfigPath().toFile();
+        Properties properties = new Properties();
+        try (FileInputStream fileInput = new FileInputStream(file)) {
+            properties.loadFromXML(fileInput);
         }
+        return properties;
+    }
+
+    public static Map<String, Object> parse(Properties properties) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Field field : GruBotConfig.class.getFields()) {
+            int modifiers = field.getModifiers();
+            String value = properties.getProperty(field.getName());
+            if (!Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || value == null)
+                continue;
+
+            try {
+                values.put(field.getName(), convert(field.getType(), value));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value for " + field.getName() + ": " + value, e);
+            }
+        }
+        return values;
+    }
+
+    public static void applyLogging() {
+        Logger.setLevel(GruBotConfig.LOG_LEVEL);
+        Logger.setOverflowPolicy(GruBotConfig.LOG_OVERFLOW);
+    }
+
+    private static Object convert(Class<?> type, String value) {
+        if (type == String.class)
+            return value;
+        if (type == int.class)
+            return Integer.valueOf(value.trim());
+        if (type == long.class)
+            return Long.valueOf(value.trim());
+        if (type == double.class)
+            return Double.valueOf(value.trim());
+        if (type == boolean.class)
+            return Boolean.valueOf(value.trim());
+        throw new IllegalArgumentException("unsupported type " + type.getSimpleName());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package gruBot.telegram.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import gruBot.telegram.bot.GruBot;
+import gruBot.telegram.bot.GruBotConfig;
+import gruBot.telegram.logger.Logger;
+import gruBot.telegram.metrics.Counter;
+import gruBot.telegram.metrics.Metrics;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class WebhookReceiver {
+    private static final Counter requests = Metrics.counter("grubot_webhook_requests_total", "Webhook requests by response status", "status");
+
+    private final GruBot bot;
+    private final HttpServer server;
+    private final String route;
+    private final boolean acknowledgeFirst;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public WebhookReceiver(GruBot bot, String host, int port, String route, int threads, int queueSize, boolean acknowledgeFirst) throws IOException {
+        this.bot = bot;
+        this.route = route;
+        this.acknowledgeFirst = acknowledgeFirst;
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.setExecutor(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "webhook-receiver");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy()));
+        this.server.createContext(route, this::handle);
+    }
+
+    public static boolean isValidSecret(String secret) {
+        return secret != null && secret.matches("[A-Za-z0-9_-]{16,}");
+    }
+
+    public static String route(String path, String secret) {
+        if (!isValidSecret(secret))
+            throw new IllegalStateException("WEBHOOK_SECRET must be at least 16 characters of A-Z, a-z, 0-9, _ or -");
+
+        String prefix = path == null ? "" : path.trim();
+        while (prefix.endsWith("/"))
+            prefix = prefix.substring(0, prefix.length() - 1);
+        if (!prefix.isEmpty() && !prefix.startsWith("/"))
+            prefix = "/" + prefix;
+        return prefix + "/" + secret;
+    }
+
+    public void start() {
+        server.start();
+        Logger.log("Webhook receiver is listening on " + server.getAddress(), Logger.INFO);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public static void registerWebhook(String baseUrl, String route, Proxy proxy) throws IOException {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        String url = base + route;
+        Logger.log("Registering webhook " + base + "/...", Logger.INFO);
+        URL setWebhook = new URL("https://api.telegram.org/bot" + GruBotConfig.BOT_TOKEN + "/setWebhook?url=" + URLEncoder.encode(url, "UTF-8"));
+        HttpURLConnection connection = (HttpURLConnection) (proxy != null ? setWebhook.openConnection(proxy) : setWebhook.openConnection());
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String response = body != null ? new Scanner(body, "UTF-8").useDelimiter("\\A").next() : "";
+        if (status != 200)
+            throw new IOException("setWebhook failed with " + status + ": " + response);
+
+        Logger.log("Webhook registered: " + response, Logger.INFO);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        Update update = null;
+        try (InputStream body = exchange.getRequestBody()) {
+            if (!route.equals(exchange.getRequestURI().getPath())) {
+                status = 404;
+            } else if (!"POST".equals(exchange.getRequestMethod())) {
+                status = 405;
+            } else {
+                update = mapper.readValue(body, Update.class);
+                status = 200;
+            }
+        } catch (IOException e) {
+            Logger.log("Malformed webhook update: " + e.getMessage(), Logger.WARNING);
+            status = 400;
+        }
+
+        if (update != null && !acknowledgeFirst)
+            status = process(update);
+        respond(exchange, status);
+        if (update != null && acknowledgeFirst)
+            process(update);
+    }
+
+    private int process(Update update) {
+        try {
+            bot.onUpdateReceived(update);
+            return 200;
+        } catch (RuntimeException e) {
+            Logger.log("Failed to handle webhook update: " + e, Logger.ERROR);
+            return 500;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        requests.increment(String.valueOf(status));
+        byte[] response = status == 200 ? new byte[0] : String.valueOf(status).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (response.length > 0)
+                out.write(response);
+        }
+    }
+}
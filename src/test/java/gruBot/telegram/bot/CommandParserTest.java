@@ -0,0 +1,72 @@
+package gruBot.telegram.bot;
+
+import gruBot.telegram.objects.Command;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandParserTest {
+    private static final long NOW = millis(LocalDateTime.of(2018, 3, 1, 12, 0));
+
+    @Test
+    public void plainPollHasNoDeadline() {
+        Command command = CommandParser.parse("?Lunch?\nPizza\nSushi", NOW);
+        assertEquals(Command.Type.POLL, command.getType());
+        assertFalse(command.hasDeadline());
+        assertEquals("Pizza", command.getOptions().get("1"));
+        assertEquals("Sushi", command.getOptions().get("2"));
+    }
+
+    @Test
+    public void durationDeadline() {
+        Command command = CommandParser.parse("?Lunch? 1d2h30m\nPizza\nSushi", NOW);
+        assertTrue(command.hasDeadline());
+        assertEquals(NOW + TimeUnit.DAYS.toMillis(1) + TimeUnit.HOURS.toMillis(2) + TimeUnit.MINUTES.toMillis(30), command.getDeadline());
+        assertEquals("Lunch\n", command.getTitle());
+        assertEquals(2, command.getOptions().size());
+    }
+
+    @Test
+    public void cyrillicDurationUnits() {
+        Command command = CommandParser.parse("?Обед? 1ч15м\nПицца", NOW);
+        assertEquals(NOW + TimeUnit.MINUTES.toMillis(75), command.getDeadline());
+    }
+
+    @Test
+    public void remindersAreSortedAndDropIfPast() {
+        Command command = CommandParser.parse("?Lunch? !10m 2h !3h !1h\nPizza", NOW);
+        long deadline = NOW + TimeUnit.HOURS.toMillis(2);
+        assertEquals(deadline, command.getDeadline());
+        assertArrayEquals(new long[]{deadline - TimeUnit.HOURS.toMillis(1), deadline - TimeUnit.MINUTES.toMillis(10)}, command.getReminders());
+    }
+
+    @Test
+    public void timeOfDayLaterToday() {
+        Command command = CommandParser.parse("?Lunch? 18:30\nPizza", NOW);
+        assertEquals(millis(LocalDateTime.of(2018, 3, 1, 18, 30)), command.getDeadline());
+    }
+
+    @Test
+    public void timeOfDayAlreadyPassedMeansTomorrow() {
+        assertEquals(millis(LocalDateTime.of(2018, 3, 2, 9, 5)), CommandParser.parse("?Lunch? 9:05\nPizza", NOW).getDeadline());
+        assertEquals(millis(LocalDateTime.of(2018, 3, 2, 12, 0)), CommandParser.parse("?Lunch? 12:00\nPizza", NOW).getDeadline());
+    }
+
+    @Test
+    public void invalidSchedulesArePlain() {
+        String[] schedules = {"24:00", "12:60", "123:00", "12:5", "1x", "h", "2h 3h", "!1h", "1234567m", "12:3a"};
+        for (String schedule : schedules)
+            assertTrue(schedule, CommandParser.parse("?Lunch? " + schedule + "\nPizza", NOW).isPlain());
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
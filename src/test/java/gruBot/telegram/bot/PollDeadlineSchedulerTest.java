@@ -0,0 +1,105 @@
+package gruBot.telegram.bot;
+
+import gruBot.telegram.storage.PollDeadline;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PollDeadlineSchedulerTest {
+    private static final long TICK = 10;
+
+    private final List<Long> closing = new CopyOnWriteArrayList<>();
+    private volatile boolean owned = true;
+
+    @Test
+    public void ownershipIsCheckedWhenTheDeadlineFires() throws Exception {
+        owned = false;
+        PollDeadlineScheduler scheduler = scheduler(1, deadline -> CompletableFuture.completedFuture(null));
+        scheduler.schedule(deadline(1, 100));
+        owned = true;
+
+        awaitClosed(scheduler, 1);
+        assertEquals(1, closing.size());
+    }
+
+    @Test
+    public void unownedDeadlineIsSkipped() throws Exception {
+        owned = false;
+        PollDeadlineScheduler scheduler = scheduler(1, deadline -> CompletableFuture.completedFuture(null));
+        scheduler.schedule(deadline(1, 20));
+        Thread.sleep(TICK * 10);
+        assertTrue(closing.isEmpty());
+        assertEquals(0, scheduler.getPending());
+    }
+
+    @Test
+    public void saturatedClosesAreDeferred() throws Exception {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        PollDeadlineScheduler scheduler = scheduler(1, deadline -> deadline.getChatId() == 1 ? first : CompletableFuture.completedFuture(null));
+        scheduler.schedule(deadline(1, 20));
+        scheduler.schedule(deadline(2, 20));
+
+        Thread.sleep(TICK * 10);
+        assertEquals(1, closing.size());
+        assertTrue(scheduler.getDeferred() > 0);
+
+        first.complete(null);
+        awaitClosed(scheduler, 2);
+        assertEquals(2, closing.size());
+    }
+
+    @Test
+    public void rejectedCloseIsRetriedOnTheNextTick() throws Exception {
+        PollDeadlineScheduler scheduler = scheduler(1, deadline -> {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            if (closing.size() == 1)
+                result.completeExceptionally(new RejectedExecutionException("full"));
+            else
+                result.complete(null);
+            return result;
+        });
+        scheduler.schedule(deadline(1, 20));
+
+        awaitClosed(scheduler, 1);
+        assertEquals(2, closing.size());
+        assertEquals(1, scheduler.getDeferred());
+    }
+
+    private PollDeadlineScheduler scheduler(int maxInFlight, Function<PollDeadline, CompletableFuture<?>> close) {
+        return new PollDeadlineScheduler(TICK, 64, maxInFlight, new PollDeadlineScheduler.Handler() {
+            @Override
+            public boolean owns(long chatId) {
+                return owned;
+            }
+
+            @Override
+            public CompletableFuture<?> close(PollDeadline deadline) {
+                closing.add(deadline.getChatId());
+                return close.apply(deadline);
+            }
+
+            @Override
+            public CompletableFuture<?> remind(PollDeadline deadline) {
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+    }
+
+    private static PollDeadline deadline(long chatId, long inMillis) {
+        return new PollDeadline(chatId, 1, System.currentTimeMillis() + inMillis, new long[0]);
+    }
+
+    private static void awaitClosed(PollDeadlineScheduler scheduler, long closed) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (scheduler.getClosed() < closed && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(closed, scheduler.getClosed());
+    }
+}
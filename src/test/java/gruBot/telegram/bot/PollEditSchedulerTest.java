@@ -0,0 +1,136 @@
+package gruBot.telegram.bot;
+
+import org.junit.Test;
+import org.telegram.telegrambots.api.methods.updatingmessages.EditMessageText;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class PollEditSchedulerTest {
+    private static final long INTERVAL = 100;
+
+    private final List<EditMessageText> sent = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Object>> inFlight = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void coalescesEditsWithinInterval() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(INTERVAL, 1, this::send);
+        scheduler.submit(edit(1, "tally 1"));
+        Thread.sleep(30);
+        completeAll();
+        for (int i = 2; i <= 5; i++)
+            scheduler.submit(edit(1, "tally " + i));
+        Thread.sleep(INTERVAL + 50);
+        completeAll();
+
+        assertEquals(2, sent.size());
+        assertEquals("tally 1", sent.get(0).getText());
+        assertEquals("tally 5", sent.get(1).getText());
+        assertEquals(5, scheduler.getSubmitted());
+        assertEquals(3, scheduler.getCoalesced());
+        assertEquals(2, scheduler.getSent());
+    }
+
+    @Test
+    public void waitsMinIntervalBetweenEditsOfOneMessage() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(INTERVAL, 1, this::send);
+        scheduler.submit(edit(1, "tally 1"));
+        Thread.sleep(30);
+        completeAll();
+
+        scheduler.submit(edit(1, "tally 2"));
+        Thread.sleep(30);
+        assertEquals(1, sent.size());
+
+        Thread.sleep(INTERVAL);
+        completeAll();
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void editsOfDifferentMessagesAreIndependent() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(INTERVAL, 1, this::send);
+        scheduler.submit(edit(1, "a"));
+        scheduler.submit(edit(2, "b"));
+        Thread.sleep(30);
+        completeAll();
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void skipsUnchangedText() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(0, 1, this::send);
+        scheduler.submit(edit(1, "same"));
+        Thread.sleep(30);
+        completeAll();
+        scheduler.submit(edit(1, "same"));
+        Thread.sleep(30);
+
+        assertEquals(1, sent.size());
+        assertEquals(1, scheduler.getSkipped());
+    }
+
+    @Test
+    public void holdsNextEditWhileOneIsInFlight() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(10, 1, this::send);
+        scheduler.submit(edit(1, "first"));
+        Thread.sleep(30);
+        scheduler.submit(edit(1, "second"));
+        Thread.sleep(50);
+        assertEquals(1, sent.size());
+
+        completeAll();
+        Thread.sleep(50);
+        assertEquals(2, sent.size());
+        assertEquals("second", sent.get(1).getText());
+    }
+
+    @Test
+    public void failedEditIsResentWhenSubmittedAgain() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(0, 1, edit -> {
+            sent.add(edit);
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("429"));
+            return failed;
+        });
+        scheduler.submit(edit(1, "same"));
+        Thread.sleep(30);
+        scheduler.submit(edit(1, "same"));
+        Thread.sleep(30);
+
+        assertEquals(2, sent.size());
+        assertEquals(0, scheduler.getSkipped());
+    }
+
+    @Test
+    public void forgottenPollDropsPendingEdit() throws Exception {
+        PollEditScheduler scheduler = new PollEditScheduler(INTERVAL, 1, this::send);
+        scheduler.submit(edit(1, "first"));
+        Thread.sleep(30);
+        completeAll();
+        scheduler.submit(edit(1, "second"));
+        scheduler.forget(-100, 1);
+        Thread.sleep(INTERVAL + 50);
+        assertEquals(1, sent.size());
+    }
+
+    private CompletableFuture<?> send(EditMessageText edit) {
+        sent.add(edit);
+        CompletableFuture<Object> done = new CompletableFuture<>();
+        inFlight.add(done);
+        return done;
+    }
+
+    private void completeAll() {
+        for (CompletableFuture<Object> done : inFlight)
+            done.complete(null);
+        inFlight.clear();
+    }
+
+    private static EditMessageText edit(int messageId, String text) {
+        return new EditMessageText().setChatId(-100L).setMessageId(messageId).setText(text);
+    }
+}
@@ -0,0 +1,123 @@
+package gruBot.telegram.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class AdminRightsCacheTest {
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void cachesStatusUntilTtl() throws Exception {
+        AdminRightsCache cache = new AdminRightsCache(10, 50, this::load);
+        assertEquals("administrator", cache.getStatus(1, 2));
+        assertEquals("administrator", cache.getStatus(1, 2));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(80);
+        cache.getStatus(1, 2);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        AdminRightsCache cache = new AdminRightsCache(2, 60000, this::load);
+        cache.getStatus(1, 1);
+        cache.getStatus(1, 2);
+        cache.getStatus(1, 1);
+        cache.getStatus(1, 3);
+        assertEquals(2, cache.size());
+
+        loads.set(0);
+        cache.getStatus(1, 1);
+        cache.getStatus(1, 3);
+        assertEquals(0, loads.get());
+        cache.getStatus(1, 2);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shrinkingLimitsEvictsEldest() throws Exception {
+        AdminRightsCache cache = new AdminRightsCache(10, 60000, this::load);
+        for (int user = 1; user <= 5; user++)
+            cache.getStatus(1, user);
+        cache.setLimits(2, 60000);
+        assertEquals(2, cache.size());
+
+        loads.set(0);
+        cache.getStatus(1, 5);
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void invalidatesUserAndChat() throws Exception {
+        AdminRightsCache cache = new AdminRightsCache(10, 60000, this::load);
+        cache.getStatus(1, 1);
+        cache.getStatus(1, 2);
+        cache.getStatus(2, 1);
+
+        cache.invalidate(1, 1);
+        assertEquals(2, cache.size());
+        cache.invalidateChat(1);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AdminRightsCache cache = new AdminRightsCache(10, 60000, (chatId, userId) -> {
+            loads.incrementAndGet();
+            release.await();
+            return "member";
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                results.add(executor.submit(() -> cache.getStatus(1, 1)));
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<String> result : results)
+                assertEquals("member", result.get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void failuresAndMissingStatusesAreNotCached() throws Exception {
+        AdminRightsCache cache = new AdminRightsCache(10, 60000, (chatId, userId) -> {
+            if (loads.incrementAndGet() == 1)
+                throw new IllegalStateException("telegram down");
+            return userId == 1 ? null : "creator";
+        });
+
+        try {
+            cache.getStatus(1, 2);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("telegram down", e.getMessage());
+        }
+        assertEquals("creator", cache.getStatus(1, 2));
+        assertNull(cache.getStatus(1, 1));
+        assertEquals(1, cache.size());
+    }
+
+    private String load(long chatId, int userId) {
+        loads.incrementAndGet();
+        return "administrator";
+    }
+}
@@ -0,0 +1,57 @@
+package gruBot.telegram.cache;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GroupCacheTest {
+    @Test
+    public void keepsOnlyActiveUsers() {
+        Map<String, Boolean> users = new HashMap<>();
+        users.put("1", true);
+        users.put("2", false);
+        GroupCache.Entry group = new GroupCache(10, 60000).put(-100, null, users);
+
+        assertTrue(group.hasUser(1));
+        assertFalse(group.hasUser(2));
+        assertTrue(group.addUser(3));
+        assertFalse(group.addUser(3));
+        group.removeUser(3);
+        assertEquals(1, group.getUsers().size());
+    }
+
+    @Test
+    public void expiresAfterTtl() throws Exception {
+        GroupCache cache = new GroupCache(10, 30);
+        cache.put(-100, null, null);
+        assertNotNull(cache.get(-100));
+
+        Thread.sleep(60);
+        assertNull(cache.get(-100));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        GroupCache cache = new GroupCache(2, 60000);
+        cache.put(1, null, null);
+        cache.put(2, null, null);
+        cache.get(1);
+        cache.put(3, null, null);
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+
+        cache.setLimits(1, 60000);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(3));
+    }
+}
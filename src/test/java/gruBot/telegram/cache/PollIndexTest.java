@@ -0,0 +1,161 @@
+package gruBot.telegram.cache;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PollIndexTest {
+    private final PollIndex index = new PollIndex();
+
+    @Test
+    public void tallyStartsFromUsers() {
+        PollIndex.Entry poll = poll("new", "new", "1");
+        assertEquals(2, poll.getTally().get("new"));
+        assertEquals(1, poll.getTally().get("1"));
+        assertEquals(0, poll.getTally().get("2"));
+    }
+
+    @Test
+    public void votesMoveTheTally() {
+        PollIndex.Entry poll = poll("new", "new", "new");
+        assertEquals("new", poll.vote(1, 1));
+        assertEquals("new", poll.vote(2, 1));
+        assertEquals("1", poll.vote(2, 2));
+        assertEquals("2", poll.vote(2, 2));
+
+        Map<String, Integer> results = poll.getResults();
+        assertEquals(1, (int) results.get("1"));
+        assertEquals(1, (int) results.get("2"));
+        assertEquals(1, (int) results.get("new"));
+    }
+
+    @Test
+    public void voteFromUnknownUserCounts() {
+        PollIndex.Entry poll = poll("new");
+        assertNull(poll.vote(42, 2));
+        assertEquals(1, poll.getTally().get("2"));
+        assertEquals(1, poll.getTally().get("new"));
+    }
+
+    @Test
+    public void revertRestoresPreviousAnswer() {
+        PollIndex.Entry poll = poll("new", "1");
+        String previous = poll.vote(1, 2);
+        poll.revertVote(1, 2, previous);
+        assertEquals("new", poll.getUsers().get("1"));
+        assertEquals(2, poll.getTally().get("new") + poll.getTally().get("1"));
+        assertEquals(0, poll.getTally().get("2"));
+
+        assertNull(poll.vote(9, 1));
+        poll.revertVote(9, 1, null);
+        assertFalse(poll.getUsers().containsKey("9"));
+        assertEquals(1, poll.getTally().get("1"));
+    }
+
+    @Test
+    public void revertIgnoresSupersededVote() {
+        PollIndex.Entry poll = poll("new");
+        String first = poll.vote(1, 1);
+        poll.vote(1, 2);
+        poll.revertVote(1, 1, first);
+        assertEquals("2", poll.getUsers().get("1"));
+        assertEquals(1, poll.getTally().get("2"));
+        assertEquals(0, poll.getTally().get("1"));
+    }
+
+    @Test
+    public void closedPollIgnoresVotes() {
+        PollIndex.Entry poll = poll("new");
+        assertTrue(poll.close());
+        assertFalse(poll.close());
+        poll.vote(1, 1);
+        poll.setUsers(Collections.singletonMap("2", "1"));
+        assertEquals(0, poll.getTally().get("1"));
+        assertEquals(1, poll.getTally().get("new"));
+    }
+
+    @Test
+    public void countsAndLazyUsersAddUp() {
+        PollIndex.Entry poll = poll();
+        Map<String, Long> counts = new HashMap<>();
+        counts.put("new", 2L);
+        counts.put("1", 1L);
+        poll.addCounts(counts);
+        poll.addUsers(Collections.singletonMap("1", "new"));
+        assertEquals(2, poll.getTally().get("new"));
+
+        assertEquals("new", poll.vote(1, 2));
+        assertEquals(1, poll.getTally().get("new"));
+        assertEquals(1, poll.getTally().get("2"));
+
+        poll.addUsers(Collections.singletonMap("1", "new"));
+        assertEquals("2", poll.getUsers().get("1"));
+    }
+
+    @Test
+    public void failedShardLoadIsRetried() {
+        PollIndex.Entry poll = poll();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("unavailable"));
+
+        assertTrue(poll.loadShard(0, () -> {
+            loads.incrementAndGet();
+            return failed;
+        }).isCompletedExceptionally());
+        CompletableFuture<Void> loaded = poll.loadShard(0, () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertSame(loaded, poll.loadShard(0, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void removesPollsOlderThanCutoff() {
+        PollIndex.Entry old = index.put(1, 1, null, new Date(1000), "old", options(), null);
+        index.put(1, 2, null, new Date(), "new", options(), null);
+        assertEquals(Collections.singletonList(old), index.removeOlderThan(new Date(2000)));
+        assertEquals(1, index.size());
+        assertSame(null, index.get(1, 1));
+    }
+
+    @Test
+    public void closeLeavesTombstoneUntilExpiry() {
+        index.put(1, 1, null, new Date(1000), "old", options(), null);
+        assertTrue(index.close(1, 1) != null);
+        assertNull(index.get(1, 1));
+        assertTrue(index.isClosed(1, 1));
+
+        index.removeOlderThan(new Date(2000));
+        assertFalse(index.isClosed(1, 1));
+    }
+
+    private PollIndex.Entry poll(String... answers) {
+        Map<String, String> users = new HashMap<>();
+        for (int i = 0; i < answers.length; i++)
+            users.put(String.valueOf(i + 1), answers[i]);
+        return index.put(-100, 1, null, new Date(), "Lunch\n", options(), users);
+    }
+
+    private static Map<String, String> options() {
+        Map<String, String> options = new HashMap<>();
+        options.put("1", "Pizza");
+        options.put("2", "Sushi");
+        return options;
+    }
+}
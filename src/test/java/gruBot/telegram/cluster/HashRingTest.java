@@ -0,0 +1,73 @@
+package gruBot.telegram.cluster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HashRingTest {
+    private static final int CHATS = 20000;
+
+    @Test
+    public void ownerDoesNotDependOnNodeOrder() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c"), 100);
+        HashRing shuffled = new HashRing(Arrays.asList("c", "a", "b"), 100);
+        for (long chatId = -CHATS; chatId < CHATS; chatId += 7)
+            assertEquals(ring.owner(chatId), shuffled.owner(chatId));
+    }
+
+    @Test
+    public void chatsAreSpreadAcrossNodes() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c", "d"), 100);
+        Map<String, Integer> owned = new HashMap<>();
+        for (long chatId = 0; chatId < CHATS; chatId++)
+            owned.merge(ring.owner(chatId), 1, Integer::sum);
+
+        assertEquals(4, owned.size());
+        for (int count : owned.values())
+            assertTrue("unbalanced: " + owned, Math.abs(count - CHATS / 4) < CHATS / 4 * 0.3);
+    }
+
+    @Test
+    public void joiningNodeOnlyTakesChatsOver() {
+        HashRing before = new HashRing(Arrays.asList("a", "b", "c"), 100);
+        HashRing after = new HashRing(Arrays.asList("a", "b", "c", "d"), 100);
+        int moved = 0;
+        for (long chatId = 0; chatId < CHATS; chatId++) {
+            String owner = after.owner(chatId);
+            if (!owner.equals(before.owner(chatId))) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved > 0 && moved < CHATS / 4 * 1.3);
+    }
+
+    @Test
+    public void ownersAreDistinctAndStartWithOwner() {
+        HashRing ring = new HashRing(Arrays.asList("a", "b", "c"), 50);
+        for (long chatId = 0; chatId < 1000; chatId++) {
+            List<String> owners = ring.owners(chatId, 2);
+            assertEquals(2, owners.size());
+            assertEquals(2, new HashSet<>(owners).size());
+            assertEquals(ring.owner(chatId), owners.get(0));
+        }
+        assertEquals(3, ring.owners(42, 5).size());
+    }
+
+    @Test
+    public void emptyRingHasNoOwner() {
+        HashRing ring = new HashRing(Collections.emptyList(), 100);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.owner(1));
+        assertTrue(ring.owners(1, 2).isEmpty());
+    }
+}
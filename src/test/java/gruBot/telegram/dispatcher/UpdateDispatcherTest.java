@@ -0,0 +1,174 @@
+package gruBot.telegram.dispatcher;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UpdateDispatcherTest {
+    private final UpdateDispatcher dispatcher = new UpdateDispatcher(4, 1000);
+
+    @After
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void updatesOfOneChatRunInOrder() throws Exception {
+        Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+        for (int i = 0; i < 500; i++)
+            for (long chatId = 1; chatId <= 10; chatId++) {
+                long chat = chatId;
+                int sequence = i;
+                dispatcher.dispatch(chat, () -> seen.computeIfAbsent(chat, key -> Collections.synchronizedList(new ArrayList<>())).add(sequence));
+            }
+        dispatcher.drain();
+
+        assertEquals(10, seen.size());
+        for (List<Integer> sequences : seen.values()) {
+            assertEquals(500, sequences.size());
+            for (int i = 0; i < sequences.size(); i++)
+                assertEquals(i, (int) sequences.get(i));
+        }
+    }
+
+    @Test
+    public void slowChatDoesNotBlockOtherStripes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch others = new CountDownLatch(3);
+        long slowChat = 0;
+        dispatcher.dispatch(slowChat, () -> await(release));
+
+        int dispatched = 0;
+        for (long chatId = 1; dispatched < 3; chatId++)
+            if (stripeOf(chatId) != stripeOf(slowChat)) {
+                dispatcher.dispatch(chatId, others::countDown);
+                dispatched++;
+            }
+
+        assertTrue(others.await(1, TimeUnit.SECONDS));
+        release.countDown();
+        dispatcher.drain();
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheStripe() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        dispatcher.dispatch(7, () -> {
+            throw new IllegalStateException("boom");
+        });
+        dispatcher.dispatch(7, ran::countDown);
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void pendingAsyncTaskHoldsBackItsChatOnly() throws Exception {
+        CompletableFuture<Void> stored = new CompletableFuture<>();
+        List<String> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch sameStripe = new CountDownLatch(1);
+        long otherChat = 1;
+        while (stripeOf(otherChat) != stripeOf(0))
+            otherChat++;
+
+        dispatcher.dispatchAsync(0, () -> {
+            seen.add("first");
+            return stored;
+        });
+        dispatcher.dispatch(0, () -> seen.add("second"));
+        dispatcher.dispatch(otherChat, sameStripe::countDown);
+
+        assertTrue(sameStripe.await(1, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("first"), seen);
+        assertEquals(1, dispatcher.getSuspended());
+
+        stored.complete(null);
+        dispatcher.drain();
+        assertEquals(2, seen.size());
+        assertEquals("second", seen.get(1));
+        assertEquals(0, dispatcher.getSuspended());
+    }
+
+    @Test
+    public void asyncTasksOfOneChatRunInOrder() throws Exception {
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Void>> pending = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int sequence = i;
+            dispatcher.dispatchAsync(3, () -> {
+                seen.add(sequence);
+                CompletableFuture<Void> stored = new CompletableFuture<>();
+                pending.add(stored);
+                return stored;
+            });
+        }
+
+        for (int i = 0; i < 5; i++) {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (pending.size() <= i && System.currentTimeMillis() < deadline)
+                Thread.sleep(1);
+            assertEquals(i + 1, seen.size());
+            pending.get(i).complete(null);
+        }
+        dispatcher.drain();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), seen);
+    }
+
+    @Test
+    public void priorityOvertakesOtherChatsOnly() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> seen = new CopyOnWriteArrayList<>();
+        long[] chats = new long[3];
+        for (long chatId = 1, found = 0; found < 3; chatId++)
+            if (stripeOf(chatId) == stripeOf(0))
+                chats[(int) found++] = chatId;
+
+        dispatcher.dispatch(0, () -> await(release));
+        dispatcher.dispatch(chats[0], () -> seen.add("message a"));
+        dispatcher.dispatch(chats[1], () -> seen.add("message b"));
+        assertTrue(dispatcher.dispatchPriority(chats[0], () -> {
+            seen.add("callback a");
+            return null;
+        }));
+        assertTrue(dispatcher.dispatchPriority(chats[2], () -> {
+            seen.add("callback c");
+            return null;
+        }));
+
+        release.countDown();
+        dispatcher.drain();
+        assertEquals(Arrays.asList("callback c", "message a", "message b", "callback a"), seen);
+    }
+
+    @Test
+    public void executorRunsOnTheChatStripe() throws Exception {
+        CompletableFuture<String> thread = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), dispatcher.executor(5));
+        assertEquals("update-dispatcher-" + stripeOf(5), thread.get(1, TimeUnit.SECONDS));
+    }
+
+    private int stripeOf(long chatId) {
+        int hash = Long.hashCode(chatId);
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % dispatcher.getPoolSize();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package gruBot.telegram.firestore;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FirestoreOptions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBatcherTest {
+    private static final long WINDOW = 50;
+    private static final com.google.cloud.firestore.Firestore db = FirestoreOptions.newBuilder()
+            .setProjectId("test")
+            .setCredentials(NoCredentials.getInstance())
+            .build()
+            .getService();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<Map<DocumentReference, Map<String, Object>>> commits = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Object>> pendingCommits = new CopyOnWriteArrayList<>();
+    private final List<Map<String, Object>> updates = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Object>> pendingUpdates = new CopyOnWriteArrayList<>();
+
+    private final WriteBatcher.Committer committer = new WriteBatcher.Committer() {
+        @Override
+        public CompletableFuture<?> commit(Map<DocumentReference, Map<String, Object>> documents) {
+            commits.add(documents);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            pendingCommits.add(future);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<?> update(DocumentReference reference, Map<String, Object> fields) {
+            updates.add(fields);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            pendingUpdates.add(future);
+            return future;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void mergesUpdatesOfOneDocument() throws Exception {
+        WriteBatcher batcher = new WriteBatcher(committer, scheduler, 10, WINDOW);
+        CompletableFuture<Void> first = batcher.update(ref("a"), fields("users.1", "1"));
+        CompletableFuture<Void> second = batcher.update(ref("a"), fields("users.1", "2"));
+        batcher.update(ref("a"), fields("users.2", "1"));
+        assertEquals(2, batcher.getPending());
+
+        batcher.flush();
+        assertEquals(1, commits.size());
+        Map<String, Object> written = commits.get(0).get(ref("a"));
+        assertEquals("2", written.get("users.1"));
+        assertEquals("1", written.get("users.2"));
+        assertEquals(0, batcher.getPending());
+
+        pendingCommits.get(0).complete(null);
+        assertTrue(first.isDone() && !first.isCompletedExceptionally());
+        assertTrue(second.isDone() && !second.isCompletedExceptionally());
+    }
+
+    @Test
+    public void flushesWhenBatchIsFull() {
+        WriteBatcher batcher = new WriteBatcher(committer, scheduler, 2, TimeUnit.MINUTES.toMillis(1));
+        batcher.update(ref("a"), fields("x", 1));
+        assertEquals(0, commits.size());
+        batcher.update(ref("b"), fields("x", 1));
+        assertEquals(1, commits.size());
+        assertEquals(2, commits.get(0).size());
+    }
+
+    @Test
+    public void flushesAfterWindow() throws Exception {
+        WriteBatcher batcher = new WriteBatcher(committer, scheduler, 10, WINDOW);
+        batcher.update(ref("a"), fields("x", 1));
+        assertEquals(0, commits.size());
+        Thread.sleep(WINDOW * 3);
+        assertEquals(1, commits.size());
+    }
+
+    @Test
+    public void keepsOneCommitInFlightPerDocument() throws Exception {
+        WriteBatcher batcher = new WriteBatcher(committer, scheduler, 10, WINDOW);
+        batcher.update(ref("a"), fields("x", 1));
+        batcher.flush();
+        batcher.update(ref("a"), fields("x", 2));
+        batcher.update(ref("b"), fields("x", 1));
+        batcher.flush();
+
+        assertEquals(2, commits.size());
+        assertEquals(Collections.singleton(ref("b")), commits.get(1).keySet());
+        assertEquals(1, batcher.getPending());
+
+        pendingCommits.get(0).complete(null);
+        Thread.sleep(WINDOW * 3);
+        assertEquals(3, commits.size());
+        assertEquals(2, commits.get(2).get(ref("a")).get("x"));
+    }
+
+    @Test
+    public void failedBatchIsRetriedPerDocumentBeforeLaterWrites() throws Exception {
+        WriteBatcher batcher = new WriteBatcher(committer, scheduler, 10, WINDOW);
+        CompletableFuture<Void> a = batcher.update(ref("a"), fields("x", 1));
+        CompletableFuture<Void> b = batcher.update(ref("b"), fields("x", 1));
+        batcher.flush();
+        pendingCommits.get(0).completeExceptionally(new RuntimeException("batch failed"));
+        assertEquals(2, updates.size());
+
+        batcher.update(ref("a"), fields("x", 2));
+        batcher.flush();
+        assertEquals(1, commits.size());
+
+        pendingUpdates.get(0).complete(null);
+        pendingUpdates.get(1).completeExceptionally(new RuntimeException("not found"));
+        assertTrue(a.isDone() && !a.isCompletedExceptionally());
+        assertTrue(b.isCompletedExceptionally());
+
+        Thread.sleep(WINDOW * 3);
+        assertEquals(2, commits.size());
+        assertEquals(2, commits.get(1).get(ref("a")).get("x"));
+    }
+
+    @Test
+    public void singleDocumentFailureIsNotRetried() {
+        WriteBatcher batcher = new WriteBatcher(committer, scheduler, 10, WINDOW);
+        CompletableFuture<Void> a = batcher.update(ref("a"), fields("x", 1));
+        batcher.flush();
+        pendingCommits.get(0).completeExceptionally(new RuntimeException("failed"));
+
+        assertTrue(a.isCompletedExceptionally());
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    public void committerExceptionFailsWaiters() {
+        WriteBatcher batcher = new WriteBatcher(new WriteBatcher.Committer() {
+            @Override
+            public CompletableFuture<?> commit(Map<DocumentReference, Map<String, Object>> documents) {
+                throw new IllegalStateException("closed");
+            }
+
+            @Override
+            public CompletableFuture<?> update(DocumentReference reference, Map<String, Object> fields) {
+                throw new IllegalStateException("closed");
+            }
+        }, scheduler, 10, WINDOW);
+        CompletableFuture<Void> a = batcher.update(ref("a"), fields("x", 1));
+        batcher.flush();
+        assertTrue(a.isCompletedExceptionally());
+
+        CompletableFuture<Void> again = batcher.update(ref("a"), fields("x", 2));
+        batcher.flush();
+        assertTrue(again.isCompletedExceptionally());
+    }
+
+    private static DocumentReference ref(String id) {
+        return db.collection("votes").document(id);
+    }
+
+    private static Map<String, Object> fields(String field, Object value) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put(field, value);
+        return fields;
+    }
+}
@@ -0,0 +1,52 @@
+package gruBot.telegram.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventJournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void longDetailIsCutAtCharacterBoundary() throws Exception {
+        StringBuilder detail = new StringBuilder();
+        while (detail.length() < Short.MAX_VALUE)
+            detail.append('ж');
+
+        EventJournal.start(folder.getRoot().toPath(), 1, 2, 1, 1000);
+        EventJournal.record(EventJournal.Type.VOTE, EventJournal.FAILED, -100, 7, 1_000_000, detail.toString());
+
+        String printed = read("type=VOTE");
+        assertTrue(printed, printed.contains("VOTE") && printed.contains("chat=-100 user=7"));
+        String written = printed.substring(printed.indexOf('ж')).trim();
+        assertEquals(Short.MAX_VALUE / 2, written.length());
+        assertEquals(detail.substring(0, written.length()), written);
+    }
+
+    private String read(String... filters) throws Exception {
+        String[] args = new String[filters.length + 1];
+        args[0] = "dir=" + folder.getRoot();
+        System.arraycopy(filters, 0, args, 1, filters.length);
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(printed, true, "UTF-8"));
+            System.setErr(new PrintStream(new ByteArrayOutputStream()));
+            JournalReader.main(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return new String(printed.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
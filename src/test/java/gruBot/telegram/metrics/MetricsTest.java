@@ -0,0 +1,34 @@
+package gruBot.telegram.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+    @Test
+    public void suppliedCountersAndGaugesAreTyped() {
+        AtomicLong sent = new AtomicLong(3);
+        Metrics.counter("test_sent_total", "Sent things", sent::get);
+        Metrics.gauge("test_depth", "Queued things", () -> 7);
+        sent.incrementAndGet();
+
+        String scrape = Metrics.scrape();
+        assertTrue(scrape.contains("# TYPE test_sent_total counter\ntest_sent_total 4\n"));
+        assertTrue(scrape.contains("# TYPE test_depth gauge\ntest_depth 7\n"));
+    }
+
+    @Test
+    public void labelledCounterAndHistogram() {
+        Counter counter = Metrics.counter("test_calls_total", "Calls", "result");
+        counter.increment("ok");
+        counter.add("ok", 2);
+        Metrics.histogram("test_duration_seconds", "Durations", "operation").observe("read", 1_000_000);
+
+        String scrape = Metrics.scrape();
+        assertTrue(scrape.contains("test_calls_total{result=\"ok\"} 3\n"));
+        assertTrue(scrape.contains("# TYPE test_duration_seconds histogram\n"));
+        assertTrue(scrape.contains("test_duration_seconds_count{operation=\"read\"} 1\n"));
+    }
+}
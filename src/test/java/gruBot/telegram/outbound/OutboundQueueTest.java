@@ -0,0 +1,103 @@
+package gruBot.telegram.outbound;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OutboundQueueTest {
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<Long> sentAt = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void sendsHigherPriorityFirst() throws Exception {
+        OutboundQueue queue = new OutboundQueue(this::record, 1, 100, 1, 10, 600);
+        queue.submit(1, message(1, "first"), OutboundQueue.Priority.NORMAL).get(1, TimeUnit.SECONDS);
+
+        CompletableFuture<Message> low = queue.submit(2, message(2, "low"), OutboundQueue.Priority.LOW);
+        CompletableFuture<Message> high = queue.submit(3, message(3, "high"), OutboundQueue.Priority.HIGH);
+        low.get(5, TimeUnit.SECONDS);
+        high.get(5, TimeUnit.SECONDS);
+
+        assertEquals("first", sent.get(0));
+        assertEquals("high", sent.get(1));
+        assertEquals("low", sent.get(2));
+    }
+
+    @Test
+    public void waitsForChatBucketInsteadOfDropping() throws Exception {
+        OutboundQueue queue = new OutboundQueue(this::record, 2, 100, 100, 1, 600);
+        long start = System.nanoTime();
+        CompletableFuture<Message> first = queue.submit(1, message(1, "a"), OutboundQueue.Priority.NORMAL);
+        CompletableFuture<Message> second = queue.submit(1, message(1, "b"), OutboundQueue.Priority.NORMAL);
+        first.get(1, TimeUnit.SECONDS);
+        second.get(1, TimeUnit.SECONDS);
+
+        assertEquals(2, sent.size());
+        assertTrue(sentAt.get(1) - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void retryAfterPausesEveryChat() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        OutboundQueue queue = new OutboundQueue(new OutboundQueue.Transport() {
+            @Override
+            public <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException {
+                if (calls.getAndIncrement() == 0)
+                    throw new TelegramApiRequestException("Too Many Requests", new JSONObject(
+                            "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":1}}"));
+                return record(method);
+            }
+        }, 2, 100, 100, 10, 600);
+
+        CompletableFuture<Message> limited = queue.submit(1, message(1, "a"), OutboundQueue.Priority.NORMAL);
+        while (calls.get() == 0 || queue.getQueueDepth() == 0)
+            Thread.sleep(1);
+        long start = System.nanoTime();
+        CompletableFuture<Message> other = queue.submit(2, message(2, "b"), OutboundQueue.Priority.NORMAL);
+        other.get(3, TimeUnit.SECONDS);
+        limited.get(3, TimeUnit.SECONDS);
+
+        assertTrue(sentAt.get(0) - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void rejectsWhenFull() throws Exception {
+        OutboundQueue queue = new OutboundQueue(this::record, 1, 1, 1, 1, 60);
+        queue.submit(1, message(1, "a"), OutboundQueue.Priority.NORMAL).get(1, TimeUnit.SECONDS);
+        queue.submit(1, message(1, "b"), OutboundQueue.Priority.NORMAL);
+        try {
+            queue.submit(1, message(1, "c"), OutboundQueue.Priority.NORMAL).get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Serializable> T record(BotApiMethod<T> method) {
+        sentAt.add(System.nanoTime());
+        sent.add(((SendMessage) method).getText());
+        return (T) new Message();
+    }
+
+    private static SendMessage message(long chatId, String text) {
+        return new SendMessage(chatId, text);
+    }
+}
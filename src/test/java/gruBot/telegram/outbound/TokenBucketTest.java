@@ -0,0 +1,73 @@
+package gruBot.telegram.outbound;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsBurstThenRefills() {
+        TokenBucket bucket = new TokenBucket(3, 1);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        assertFalse(bucket.tryAcquire(now + SECOND / 2));
+        assertTrue(bucket.tryAcquire(now + SECOND));
+        assertFalse(bucket.tryAcquire(now + SECOND));
+    }
+
+    @Test
+    public void reportsTimeUntilNextToken() {
+        TokenBucket bucket = new TokenBucket(1, 2);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.nanosUntilAvailable(now));
+        assertTrue(bucket.tryAcquire(now));
+
+        long wait = bucket.nanosUntilAvailable(now);
+        assertTrue(wait > SECOND / 2 - 1000 && wait <= SECOND / 2 + 1000);
+        assertEquals(0, bucket.nanosUntilAvailable(now + SECOND / 2 + 1000));
+    }
+
+    @Test
+    public void pauseBlocksEvenWithTokens() {
+        TokenBucket bucket = new TokenBucket(5, 5);
+        long now = System.nanoTime();
+        bucket.pauseUntil(now + SECOND);
+        assertFalse(bucket.tryAcquire(now));
+        assertEquals(SECOND, bucket.nanosUntilAvailable(now));
+        assertFalse(bucket.isIdle(now));
+
+        bucket.pauseUntil(now);
+        assertFalse(bucket.tryAcquire(now + SECOND / 2));
+        assertTrue(bucket.tryAcquire(now + SECOND));
+    }
+
+    @Test
+    public void setRateCapsStoredTokens() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.setRate(2, 1);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    public void idleOnlyWhenFull() {
+        TokenBucket bucket = new TokenBucket(2, 1);
+        long now = System.nanoTime();
+        assertTrue(bucket.isIdle(now));
+        bucket.tryAcquire(now);
+        assertFalse(bucket.isIdle(now));
+        assertTrue(bucket.isIdle(now + SECOND));
+    }
+}
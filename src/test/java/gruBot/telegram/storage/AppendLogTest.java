@@ -0,0 +1,114 @@
+package gruBot.telegram.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AppendLogTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysDurableRecords() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("storage.log");
+        AppendLog log = open(file, new ArrayList<>());
+        log.append(record("a", 1));
+        log.append(record("b", 2)).get(1, TimeUnit.SECONDS);
+        log.close();
+
+        List<AppendLog.Record> replayed = new ArrayList<>();
+        open(file, replayed).close();
+        assertEquals(2, replayed.size());
+        assertEquals("a", replayed.get(0).getId());
+        assertEquals(2, replayed.get(1).getFields().get("x"));
+    }
+
+    @Test
+    public void truncatesIncompleteLastRecord() throws Exception {
+        Path file = write(line("a"), "{\"op\":\"set\",\"c\":\"votes\"");
+
+        List<AppendLog.Record> replayed = new ArrayList<>();
+        AppendLog log = open(file, replayed);
+        log.close();
+        assertEquals(1, replayed.size());
+        assertEquals(line("a").length(), Files.size(file));
+    }
+
+    @Test
+    public void toleratesCorruptLastLine() throws Exception {
+        Path file = write(line("a"), "{\"op\":\n");
+
+        List<AppendLog.Record> replayed = new ArrayList<>();
+        open(file, replayed).close();
+        assertEquals(1, replayed.size());
+        assertEquals(line("a").length(), Files.size(file));
+    }
+
+    @Test
+    public void failsOnCorruptRecordBeforeTheEnd() throws Exception {
+        Path file = write(line("a"), "{\"op\":\n", line("b"));
+        long size = Files.size(file);
+
+        AppendLog log = new AppendLog(file, 1);
+        try {
+            log.replay(record -> {
+            });
+            fail("replay accepted a corrupt record");
+        } catch (IOException e) {
+            assertEquals(size, Files.size(file));
+        }
+    }
+
+    @Test
+    public void rewriteReplacesTheLog() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("storage.log");
+        AppendLog log = open(file, new ArrayList<>());
+        for (int i = 0; i < 5; i++)
+            log.append(record("a", i));
+        log.rewrite(Collections.singletonList(record("a", 4)));
+        log.append(record("b", 1)).get(1, TimeUnit.SECONDS);
+        assertEquals(2, log.getRecords());
+        log.close();
+
+        List<AppendLog.Record> replayed = new ArrayList<>();
+        open(file, replayed).close();
+        assertEquals(2, replayed.size());
+        assertEquals(4, replayed.get(0).getFields().get("x"));
+        assertEquals("b", replayed.get(1).getId());
+    }
+
+    private AppendLog open(Path file, List<AppendLog.Record> replayed) throws IOException {
+        AppendLog log = new AppendLog(file, 1);
+        log.replay(replayed::add);
+        return log;
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("storage.log");
+        for (String line : lines)
+            Files.write(file, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return file;
+    }
+
+    private static String line(String id) {
+        return "{\"op\":\"set\",\"c\":\"votes\",\"id\":\"" + id + "\",\"f\":{\"x\":1}}\n";
+    }
+
+    private static AppendLog.Record record(String id, int x) {
+        return new AppendLog.Record(AppendLog.SET, "votes", id, Collections.singletonMap("x", x));
+    }
+}
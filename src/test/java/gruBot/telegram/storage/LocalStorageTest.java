@@ -0,0 +1,78 @@
+package gruBot.telegram.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gruBot.telegram.cache.PollIndex;
+import gruBot.telegram.objects.Command;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocalStorageTest {
+    private static final long CHAT_ID = -100;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayRestoresGroupsAndPolls() throws Exception {
+        LocalStorage storage = new LocalStorage(null, folder.getRoot().toPath());
+        assertFalse(storage.checkGroupExists(CHAT_ID).get());
+        storage.createNewGroup(update()).get();
+        storage.checkUserExistsInGroup(update()).get();
+        HashMap<String, Object> poll = storage.createNewPoll(update(), poll()).get();
+        storage.setMessageIdToAction(42, poll).get(1, TimeUnit.SECONDS);
+
+        LocalStorage replayed = new LocalStorage(null, folder.getRoot().toPath());
+        assertTrue(replayed.checkGroupExists(CHAT_ID).get());
+        PollIndex.Entry entry = replayed.getPoll(CHAT_ID, 42).get();
+        assertNotNull(entry);
+        assertEquals("votes/" + poll.get("id"), entry.getPath());
+        assertEquals(1, entry.getTally().get("new"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void listenerSeesExistingDocumentsThenChanges() throws Exception {
+        LocalStorage storage = new LocalStorage(null, folder.getRoot().toPath());
+        storage.createNewGroup(update()).get();
+
+        List<StorageChange> changes = new CopyOnWriteArrayList<>();
+        storage.addChangeListener("groups", changes::add);
+        storage.checkUserExistsInGroup(update()).get();
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (changes.size() < 2 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(2, changes.size());
+        assertEquals(StorageChange.Type.ADDED, changes.get(0).getType());
+        assertEquals(String.valueOf(CHAT_ID), String.valueOf(changes.get(0).getData().get("chatId")));
+        assertEquals(StorageChange.Type.MODIFIED, changes.get(1).getType());
+        assertEquals(changes.get(0).getId(), changes.get(1).getId());
+        assertEquals(true, ((Map<String, Object>) changes.get(1).getData().get("users")).get("7"));
+    }
+
+    private static Update update() throws Exception {
+        return new ObjectMapper().readValue("{\"update_id\":1,\"message\":{\"message_id\":5,\"date\":0,"
+                + "\"chat\":{\"id\":" + CHAT_ID + ",\"type\":\"group\",\"title\":\"Team\"},"
+                + "\"from\":{\"id\":7,\"first_name\":\"Ann\",\"last_name\":\"Lee\",\"is_bot\":false}}}", Update.class);
+    }
+
+    private static Command poll() {
+        HashMap<String, String> options = new HashMap<>();
+        options.put("1", "Pizza");
+        options.put("2", "Sushi");
+        return new Command(Command.Type.POLL, "Lunch", null, options);
+    }
+}
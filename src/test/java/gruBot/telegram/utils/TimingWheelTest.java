@@ -0,0 +1,80 @@
+package gruBot.telegram.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 4;
+
+    private final Map<Integer, Long> fired = new ConcurrentHashMap<>();
+    private CountDownLatch latch;
+    private TimingWheel<Integer> wheel;
+
+    @After
+    public void stop() {
+        if (wheel != null)
+            wheel.stop();
+    }
+
+    @Test
+    public void deadlinesBeyondOneRotationFireOnTime() throws Exception {
+        start(5);
+        long now = System.currentTimeMillis();
+        long[] delays = {5, 35, 45, 95, 205};
+        for (int i = 0; i < delays.length; i++)
+            wheel.schedule(i, now + delays[i]);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < delays.length; i++) {
+            long lateness = fired.get(i) - (now + delays[i]);
+            assertTrue("task " + i + " fired " + -lateness + " ms early", lateness >= 0);
+            assertTrue("task " + i + " fired " + lateness + " ms late", lateness < 200);
+        }
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    public void pastDeadlineFiresOnNextTick() throws Exception {
+        start(1);
+        wheel.schedule(0, System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1));
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() throws Exception {
+        start(1);
+        long now = System.currentTimeMillis();
+        TimingWheel.Timeout<Integer> cancelled = wheel.schedule(0, now + 50);
+        wheel.schedule(1, now + 100);
+        assertEquals(2, wheel.getPending());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, wheel.getPending());
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Thread.sleep(2 * TICK_MILLIS);
+        assertFalse(fired.containsKey(0));
+        assertTrue(fired.containsKey(1));
+        assertEquals(0, wheel.getPending());
+    }
+
+    private void start(int expected) {
+        latch = new CountDownLatch(expected);
+        wheel = new TimingWheel<>("test-wheel", TICK_MILLIS, WHEEL_SIZE, task -> {
+            fired.put(task, System.currentTimeMillis());
+            latch.countDown();
+        });
+    }
+}